@@ -4,8 +4,11 @@ import com.yellspells.config.YellSpellsConfig;
 import com.yellspells.commands.ReloadCommand;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import com.yellspells.network.YellSpellsNetworking;
+import com.yellspells.server.voice.ServerVoiceRecognizer;
 import com.yellspells.spells.SpellManager;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,20 @@ public final class YellSpellsMod implements ModInitializer {
     YellSpellsNetworking.registerServer();
     // Register commands
     CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, env) -> ReloadCommand.register(dispatcher));
+    // Optional server-side recognition of SVC audio
+    ServerLifecycleEvents.SERVER_STARTED.register(ServerVoiceRecognizer::start);
+    ServerLifecycleEvents.SERVER_STOPPING.register(server -> ServerVoiceRecognizer.stop());
+    ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+      ServerVoiceRecognizer recognizer = ServerVoiceRecognizer.get();
+      if (recognizer != null) recognizer.add(handler.player.getUuid());
+    });
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+      ServerVoiceRecognizer recognizer = ServerVoiceRecognizer.get();
+      if (recognizer != null) recognizer.remove(handler.player.getUuid());
+    });
+    // Cooldowns are only kept for online players
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> spellManager.onPlayerDisconnect(handler.player));
+    ServerLifecycleEvents.SERVER_STOPPING.register(spellManager::onServerStopping);
     
     LOGGER.info("YellSpells mod initialized");
   }
@@ -0,0 +1,90 @@
+package com.yellspells.audio;
+
+/**
+ * 48 kHz mono 16-bit short[] -> 16 kHz float[] (normalized -1..1)
+ * 3:1 polyphase decimation with low-pass FIR (Hamming window, ~7.2 kHz cutoff).
+ * Only the retained output phase is ever computed, against a persistent history ring, and
+ * output goes into caller-owned buffers: no allocation per call. The FIR and int16 conversion
+ * run through {@link DspKernels} (Vector API when available). Emits exactly inLen/3 samples
+ * for the 960-sample SVC frames.
+ */
+public final class AudioResampler {
+
+  private static final int FACTOR = 3;
+
+  // Precomputed symmetric FIR taps (length is multiple of 3 preferred;  ninety-ish taps is fine)
+  private static final float[] TAPS = buildLowpassTaps(81, 48000, 7200); // length, fs, fc
+
+  // Delay line written twice (at w and w + N) so the newest N samples are always
+  // contiguous at history[w .. w + N - 1], oldest first. No per-call copy or modulo in the MAC loop.
+  private final float[] history = new float[2 * TAPS.length];
+  private int write = 0;
+  private int phase = 0; // input samples since the last emitted output, mod FACTOR
+
+  private final DspKernels dsp;
+  // int16 -> float conversion scratch, sized for one SVC frame; regrown only if frames get larger
+  private float[] scratch = new float[960];
+
+  public AudioResampler() { this(DspKernels.get()); }
+
+  public AudioResampler(DspKernels dsp) { this.dsp = dsp; }
+
+  /** Upper bound on output samples for {@code inSamples48} input samples. */
+  public int outLengthFor(int inSamples48) { return (inSamples48 + FACTOR - 1) / FACTOR; }
+
+  public int process(short[] inPcm48, float[] outPcm16k) {
+    return process(inPcm48, 0, inPcm48.length, outPcm16k, 0);
+  }
+
+  public int process(short[] inPcm48, int inOff, int inLen, float[] outPcm16k, int outOff) {
+    if (scratch.length < inLen) scratch = new float[inLen];
+    final float[] x = scratch;
+    dsp.shortsToFloats(inPcm48, inOff, x, 0, inLen, 1f / 32768f);
+
+    final int n = TAPS.length;
+    final float[] h = history;
+    int w = write;
+    int p = phase;
+    int o = outOff;
+
+    for (int i = 0; i < inLen; i++) {
+      float s = x[i];
+      h[w] = s;
+      h[w + n] = s;
+      if (++w == n) w = 0;
+
+      if (p == 0) {
+        outPcm16k[o++] = dsp.symmetricFir(h, w, TAPS);
+      }
+      if (++p == FACTOR) p = 0;
+    }
+
+    write = w;
+    phase = p;
+    return o - outOff;
+  }
+
+  public void reset() {
+    java.util.Arrays.fill(history, 0f);
+    write = 0;
+    phase = 0;
+  }
+
+  private static float[] buildLowpassTaps(int length, int fs, int fc) {
+    // windowed-sinc (Hamming), normalized to unity gain at DC
+    float[] h = new float[length];
+    int M = length - 1;
+    double sum = 0;
+    for (int n = 0; n < length; n++) {
+      double m = n - M / 2.0;
+      double sinc = (m == 0) ? 2.0 * Math.PI * fc / fs
+                              : Math.sin(2.0 * Math.PI * fc * m / fs) / m;
+      double w = 0.54 - 0.46 * Math.cos(2.0 * Math.PI * n / M);
+      h[n] = (float) (sinc * w);
+      sum += h[n];
+    }
+    // normalize
+    for (int i = 0; i < length; i++) h[i] /= (float) sum;
+    return h;
+  }
+}
@@ -0,0 +1,52 @@
+package com.yellspells.audio;
+
+import com.yellspells.YellSpellsMod;
+
+/**
+ * Hot DSP loops of the audio front end (resampler FIR, int16 conversion, VAD energy).
+ * The implementation is picked once at startup: the jdk.incubator.vector version when it was
+ * built (-PvectorKernels, src/vector) and the module is present (JVM started with
+ * --add-modules jdk.incubator.vector), otherwise scalar.
+ * Set -Dyellspells.simd=false to force the scalar path.
+ */
+public abstract class DspKernels {
+
+  private static final DspKernels INSTANCE = select();
+
+  public static DspKernels get() { return INSTANCE; }
+
+  /** Scalar reference implementation, always available. */
+  public static DspKernels scalar() { return ScalarDspKernels.INSTANCE; }
+
+  public abstract String name();
+
+  /**
+   * FIR dot product over x[off .. off + taps.length - 1] for a symmetric (linear-phase) filter.
+   * Mirrored taps are folded: each multiply covers two samples.
+   */
+  public abstract float symmetricFir(float[] x, int off, float[] taps);
+
+  /** dst[dstOff + i] = src[srcOff + i] * scale */
+  public abstract void shortsToFloats(short[] src, int srcOff, float[] dst, int dstOff, int len, float scale);
+
+  public abstract float sumOfSquares(float[] x, int off, int len);
+
+  private static DspKernels select() {
+    if (Boolean.parseBoolean(System.getProperty("yellspells.simd", "true"))
+        && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        DspKernels k = (DspKernels) Class.forName("com.yellspells.audio.VectorDspKernels")
+            .getDeclaredConstructor().newInstance();
+        YellSpellsMod.LOGGER.info("DSP: using {} kernels", k.name());
+        return k;
+      } catch (ClassNotFoundException e) {
+        YellSpellsMod.LOGGER.info("DSP: vector kernels not built into this jar, using scalar kernels");
+      } catch (Throwable t) {
+        YellSpellsMod.LOGGER.warn("DSP: Vector API unavailable ({}), using scalar kernels", t.toString());
+      }
+    } else {
+      YellSpellsMod.LOGGER.info("DSP: using scalar kernels");
+    }
+    return ScalarDspKernels.INSTANCE;
+  }
+}
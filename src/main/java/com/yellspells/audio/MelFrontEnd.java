@@ -0,0 +1,143 @@
+package com.yellspells.audio;
+
+/**
+ * Reusable 16 kHz spectral front end: Hamming window -> 512-point FFT -> power spectrum ->
+ * mel filterbank -> log -> DCT (MFCC).
+ * Twiddle, bit-reversal, window, filterbank and DCT tables are computed once per instance and
+ * all frame buffers are preallocated, so per-frame work allocates nothing. Not thread-safe:
+ * one instance per thread.
+ */
+public final class MelFrontEnd {
+
+  public static final int SAMPLE_RATE = 16000;
+  public static final int N_FFT = 512;
+  public static final int N_BINS = N_FFT / 2 + 1;
+  public static final int N_MELS = 26;
+  public static final int N_MFCC = 13;
+
+  private static final int LOG2_N = 9;
+  private static final float LOG_FLOOR = 1e-10f;
+
+  private final int frameLength;
+  private final float[] window;
+  private final float[] cos = new float[N_FFT / 2];
+  private final float[] sin = new float[N_FFT / 2];
+  private final int[] bitReverse = new int[N_FFT];
+  // Triangular mel filters stored sparsely: filter m covers bins [melStart[m], melStart[m] + melWeights[m].length)
+  private final int[] melStart = new int[N_MELS];
+  private final float[][] melWeights = new float[N_MELS][];
+  private final float[] dct = new float[N_MFCC * N_MELS];
+
+  // Frame buffers
+  private final float[] re = new float[N_FFT];
+  private final float[] im = new float[N_FFT];
+
+  public MelFrontEnd(int frameLength) {
+    if (frameLength > N_FFT) throw new IllegalArgumentException("frameLength > " + N_FFT);
+    this.frameLength = frameLength;
+
+    window = new float[frameLength];
+    for (int n = 0; n < frameLength; n++) {
+      window[n] = (float) (0.54 - 0.46 * Math.cos(2.0 * Math.PI * n / (frameLength - 1)));
+    }
+    for (int k = 0; k < N_FFT / 2; k++) {
+      cos[k] = (float) Math.cos(-2.0 * Math.PI * k / N_FFT);
+      sin[k] = (float) Math.sin(-2.0 * Math.PI * k / N_FFT);
+    }
+    for (int i = 0; i < N_FFT; i++) {
+      bitReverse[i] = Integer.reverse(i) >>> (32 - LOG2_N);
+    }
+    buildMelFilters(20.0, SAMPLE_RATE / 2.0);
+    for (int c = 0; c < N_MFCC; c++) {
+      for (int m = 0; m < N_MELS; m++) {
+        dct[c * N_MELS + m] = (float) Math.cos(Math.PI * c * (m + 0.5) / N_MELS);
+      }
+    }
+  }
+
+  public int frameLength() { return frameLength; }
+
+  /** Frequency in Hz at the centre of FFT bin {@code bin}. */
+  public static float binHz(int bin) { return bin * (float) SAMPLE_RATE / N_FFT; }
+
+  /** Windowed power spectrum of x[off .. off + frameLength) into power[0 .. N_BINS). */
+  public void powerSpectrum(float[] x, int off, float[] power) {
+    for (int i = 0; i < N_FFT; i++) {
+      int j = bitReverse[i];
+      re[i] = j < frameLength ? x[off + j] * window[j] : 0f;
+      im[i] = 0f;
+    }
+    fft();
+    for (int k = 0; k < N_BINS; k++) {
+      power[k] = re[k] * re[k] + im[k] * im[k];
+    }
+  }
+
+  /** Log mel energies of a power spectrum into mel[0 .. N_MELS). */
+  public void logMel(float[] power, float[] mel) {
+    for (int m = 0; m < N_MELS; m++) {
+      float[] w = melWeights[m];
+      int start = melStart[m];
+      float acc = 0f;
+      for (int k = 0; k < w.length; k++) acc += w[k] * power[start + k];
+      mel[m] = (float) Math.log(Math.max(acc, LOG_FLOOR));
+    }
+  }
+
+  /** DCT-II of log mel energies into mfcc[off .. off + N_MFCC). */
+  public void mfcc(float[] logMel, float[] out, int off) {
+    for (int c = 0; c < N_MFCC; c++) {
+      float acc = 0f;
+      int row = c * N_MELS;
+      for (int m = 0; m < N_MELS; m++) acc += dct[row + m] * logMel[m];
+      out[off + c] = acc;
+    }
+  }
+
+  // In-place iterative radix-2 FFT on (re, im), input already in bit-reversed order
+  private void fft() {
+    for (int size = 2; size <= N_FFT; size <<= 1) {
+      int half = size >>> 1;
+      int step = N_FFT / size;
+      for (int start = 0; start < N_FFT; start += size) {
+        for (int k = 0; k < half; k++) {
+          float wr = cos[k * step];
+          float wi = sin[k * step];
+          int a = start + k;
+          int b = a + half;
+          float tr = re[b] * wr - im[b] * wi;
+          float ti = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - tr;
+          im[b] = im[a] - ti;
+          re[a] += tr;
+          im[a] += ti;
+        }
+      }
+    }
+  }
+
+  private void buildMelFilters(double fMin, double fMax) {
+    double melMin = hzToMel(fMin);
+    double melMax = hzToMel(fMax);
+    double[] edges = new double[N_MELS + 2];
+    for (int i = 0; i < edges.length; i++) {
+      edges[i] = melToHz(melMin + (melMax - melMin) * i / (N_MELS + 1)) * N_FFT / SAMPLE_RATE;
+    }
+    for (int m = 0; m < N_MELS; m++) {
+      double lo = edges[m], mid = edges[m + 1], hi = edges[m + 2];
+      int start = (int) Math.ceil(lo);
+      int end = Math.min(N_BINS - 1, (int) Math.floor(hi));
+      float[] w = new float[Math.max(0, end - start + 1)];
+      for (int k = start; k <= end; k++) {
+        double v = k <= mid ? (k - lo) / (mid - lo) : (hi - k) / (hi - mid);
+        w[k - start] = (float) Math.max(0.0, v);
+      }
+      melStart[m] = start;
+      melWeights[m] = w;
+    }
+  }
+
+  private static double hzToMel(double hz) { return 2595.0 * Math.log10(1.0 + hz / 700.0); }
+
+  private static double melToHz(double mel) { return 700.0 * (Math.pow(10.0, mel / 2595.0) - 1.0); }
+}
@@ -0,0 +1,51 @@
+package com.yellspells.audio;
+
+/**
+ * Fixed-size history of the most recent samples, overwritten oldest-first.
+ * Owned by a single thread (the SVC audio thread); holds the audio just before a VAD
+ * onset so word beginnings are not clipped when the gate opens.
+ */
+public final class PreRollBuffer {
+
+  private final float[] data;
+  private int write = 0;
+  private int size = 0;
+
+  public PreRollBuffer(int capacity) {
+    this.data = new float[Math.max(0, capacity)];
+  }
+
+  public int size() { return size; }
+
+  public void push(float[] src, int off, int len) {
+    int cap = data.length;
+    if (cap == 0) return;
+    if (len >= cap) {
+      // Only the last cap samples survive
+      System.arraycopy(src, off + len - cap, data, 0, cap);
+      write = 0;
+      size = cap;
+      return;
+    }
+    int first = Math.min(len, cap - write);
+    System.arraycopy(src, off, data, write, first);
+    if (first < len) System.arraycopy(src, off + first, data, 0, len - first);
+    write = (write + len) % cap;
+    size = Math.min(cap, size + len);
+  }
+
+  /** Copy the buffered samples, oldest first, into {@code dst}. Returns the number copied. */
+  public int copyTo(float[] dst, int dstOff) {
+    int cap = data.length;
+    int start = (write - size + cap) % Math.max(1, cap);
+    int first = Math.min(size, cap - start);
+    System.arraycopy(data, start, dst, dstOff, first);
+    if (first < size) System.arraycopy(data, 0, dst, dstOff + first, size - first);
+    return size;
+  }
+
+  public void clear() {
+    write = 0;
+    size = 0;
+  }
+}
@@ -0,0 +1,39 @@
+package com.yellspells.audio;
+
+final class ScalarDspKernels extends DspKernels {
+
+  static final ScalarDspKernels INSTANCE = new ScalarDspKernels();
+
+  private ScalarDspKernels() {}
+
+  @Override
+  public String name() { return "scalar"; }
+
+  @Override
+  public float symmetricFir(float[] x, int off, float[] taps) {
+    int n = taps.length;
+    int half = n >>> 1;
+    int last = off + n - 1;
+    float acc = 0f;
+    for (int k = 0; k < half; k++) {
+      acc += taps[k] * (x[off + k] + x[last - k]);
+    }
+    if ((n & 1) != 0) acc += taps[half] * x[off + half];
+    return acc;
+  }
+
+  @Override
+  public void shortsToFloats(short[] src, int srcOff, float[] dst, int dstOff, int len, float scale) {
+    for (int i = 0; i < len; i++) dst[dstOff + i] = src[srcOff + i] * scale;
+  }
+
+  @Override
+  public float sumOfSquares(float[] x, int off, int len) {
+    float acc = 0f;
+    for (int i = 0; i < len; i++) {
+      float s = x[off + i];
+      acc += s * s;
+    }
+    return acc;
+  }
+}
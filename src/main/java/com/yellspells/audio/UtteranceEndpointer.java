@@ -0,0 +1,119 @@
+package com.yellspells.audio;
+
+/**
+ * Turns per-frame VAD decisions into whole utterances.
+ * An utterance starts on the first voiced frame (prefixed with pre-roll audio), ends after
+ * {@code minSilenceMs} of consecutive unvoiced frames, and is force-ended at {@code maxUtteranceMs}.
+ * Utterances with less than {@code minSpeechMs} of voiced audio are discarded as clicks/bumps.
+ * Optionally emits growing partials every {@code partialIntervalMs} while the speaker is still talking.
+ * Single-threaded (SVC audio thread); all buffers are preallocated.
+ */
+public final class UtteranceEndpointer {
+
+  public interface Listener {
+    /** {@code samples[0 .. len)} is only valid for the duration of the call. */
+    void onUtterance(float[] samples, int len, boolean isFinal);
+  }
+
+  private static final int FRAME = 320;          // 20 ms @16k
+  private static final int TAIL_KEEP_FRAMES = 10; // trailing silence kept on a final utterance (200 ms)
+
+  private final Listener listener;
+  private final int minSpeechFrames;
+  private final int minSilenceFrames;
+  private int partialFrames;
+  private final PreRollBuffer preRoll;
+  private final float[] buf;
+  private final int maxSamples;
+
+  private boolean active = false;
+  private int len = 0;
+  private int speechFrames = 0;
+  private int silenceFrames = 0;
+  private int framesSincePartial = 0;
+
+  // Telemetry; written only by the owning thread
+  private volatile long utterances = 0;
+  private volatile long discarded = 0;
+  private volatile long forcedEnds = 0;
+  private volatile long skippedSamples = 0;
+
+  public UtteranceEndpointer(Listener listener, int preRollMs, int minSpeechMs, int minSilenceMs,
+                             int maxUtteranceMs, int partialIntervalMs) {
+    this.listener = listener;
+    this.minSpeechFrames = Math.max(1, minSpeechMs / 20);
+    this.minSilenceFrames = Math.max(1, minSilenceMs / 20);
+    this.partialFrames = Math.max(0, partialIntervalMs / 20);
+    int preRollSamples = Math.max(0, preRollMs) * 16;
+    this.preRoll = new PreRollBuffer(preRollSamples);
+    this.maxSamples = preRollSamples + Math.max(FRAME, maxUtteranceMs * 16);
+    this.buf = new float[maxSamples];
+  }
+
+  /** Change the partial interval (0 = finals only); takes effect from the next frame. */
+  public void setPartialIntervalMs(int partialIntervalMs) {
+    this.partialFrames = Math.max(0, partialIntervalMs / 20);
+  }
+
+  /** Largest utterance this endpointer can emit, in samples. */
+  public int maxUtteranceSamples() { return maxSamples; }
+
+  /** Feed one 20 ms frame and the VAD decision for it. */
+  public void accept(float[] frame, int off, boolean voiced) {
+    if (!active) {
+      if (!voiced) {
+        preRoll.push(frame, off, FRAME);
+        skippedSamples += FRAME;
+        return;
+      }
+      active = true;
+      len = preRoll.copyTo(buf, 0);
+      preRoll.clear();
+      speechFrames = 0;
+      silenceFrames = 0;
+      framesSincePartial = 0;
+    }
+
+    System.arraycopy(frame, off, buf, len, FRAME);
+    len += FRAME;
+    framesSincePartial++;
+    if (voiced) {
+      speechFrames++;
+      silenceFrames = 0;
+    } else {
+      silenceFrames++;
+    }
+
+    if (silenceFrames >= minSilenceFrames) {
+      end(false);
+    } else if (len + FRAME > maxSamples) {
+      end(true);
+    } else if (partialFrames > 0 && framesSincePartial >= partialFrames && speechFrames >= minSpeechFrames) {
+      framesSincePartial = 0;
+      listener.onUtterance(buf, len, false);
+    }
+  }
+
+  private void end(boolean forced) {
+    if (speechFrames >= minSpeechFrames) {
+      int trailing = Math.max(0, silenceFrames - TAIL_KEEP_FRAMES) * FRAME;
+      listener.onUtterance(buf, len - trailing, true);
+      utterances++;
+      if (forced) forcedEnds++;
+    } else {
+      discarded++;
+    }
+    active = false;
+    len = 0;
+  }
+
+  public boolean inUtterance() { return active; }
+
+  public long getUtterances() { return utterances; }
+
+  public long getDiscarded() { return discarded; }
+
+  public long getForcedEnds() { return forcedEnds; }
+
+  public long getSkippedSamples() { return skippedSamples; }
+}
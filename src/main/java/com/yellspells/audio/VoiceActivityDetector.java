@@ -0,0 +1,128 @@
+package com.yellspells.audio;
+
+import com.yellspells.YellSpellsMod;
+
+/**
+ * Energy VAD with an adaptive noise floor, optionally backed by spectral checks.
+ * In spectral mode a frame only counts toward speech onset if, besides being loud enough, most of
+ * its energy sits in the voice band, its spectrum is peaky rather than flat and its zero-crossing
+ * rate is speech-like. This rejects keyboard clatter (broadband, flat) and footsteps (below the
+ * voice band) that the RMS test alone wakes up on. Frames must be at most 512 samples.
+ */
+public final class VoiceActivityDetector {
+
+  // Spectral decision bounds, tuned on 20 ms frames @16k
+  private static final float MIN_BAND_RATIO = 0.5f;  // energy share in 100..4000 Hz
+  private static final float MAX_FLATNESS = 0.35f;   // white noise ~0.56, voiced speech ~0.05..0.3
+  private static final float MAX_ZCR = 0.25f;        // zero crossings per sample
+
+  private final float attack;      // e.g., 0.005f
+  private final float release;     // e.g., 0.003f
+  private final int   minFrames;   // e.g., 6 frames @16k (≈120ms) to confirm speech
+  private final DspKernels dsp = DspKernels.get();
+
+  // Spectral mode only (null otherwise)
+  private final MelFrontEnd frontEnd;
+  private final float[] power;
+  private final int bandLo;
+  private final int bandHi;
+  private float bandRatio;
+  private float flatness;
+  private float zcr;
+
+  private float noise = 0.02f;
+  private boolean speaking = false;
+  private int voicedCount = 0;
+  private int frameCount = 0;
+
+  public VoiceActivityDetector(float attack, float release, int minFrames) {
+    this(attack, release, minFrames, 0);
+  }
+
+  /** @param spectralFrame frame length for spectral checks, or 0 for the plain energy detector */
+  public VoiceActivityDetector(float attack, float release, int minFrames, int spectralFrame) {
+    this.attack = attack;
+    this.release = release;
+    this.minFrames = minFrames;
+    if (spectralFrame > 0) {
+      frontEnd = new MelFrontEnd(spectralFrame);
+      power = new float[MelFrontEnd.N_BINS];
+      bandLo = Math.round(100f * MelFrontEnd.N_FFT / MelFrontEnd.SAMPLE_RATE);
+      bandHi = Math.round(4000f * MelFrontEnd.N_FFT / MelFrontEnd.SAMPLE_RATE);
+    } else {
+      frontEnd = null;
+      power = null;
+      bandLo = 0;
+      bandHi = 0;
+    }
+  }
+
+  public boolean isSpectral() { return frontEnd != null; }
+
+  public boolean update(float[] block, int len) {
+    return update(block, 0, len);
+  }
+
+  public boolean update(float[] block, int off, int len) {
+    // simple RMS
+    float rms = (float)Math.sqrt(dsp.sumOfSquares(block, off, len) / Math.max(1, len));
+
+    // adapt noise floor
+    noise = (speaking ? noise * (1 - release) + rms * release
+                      : noise * (1 - attack) + rms * attack);
+
+    float hi = noise * 3.0f;
+    float lo = noise * 1.5f;
+
+    // Reduce log spam: only log state transitions, not periodic telemetry
+
+    if (speaking) {
+      if (rms < lo) {
+        speaking = false;
+        voicedCount = 0;
+      }
+    } else {
+      if (rms > hi && (frontEnd == null || len != frontEnd.frameLength() || speechLike(block, off, len))) {
+        if (++voicedCount >= minFrames) {
+          speaking = true;
+          voicedCount = 0;
+          YellSpellsMod.LOGGER.info("VAD: Voice activity detected! rms={} > hi={}", String.format("%.4f", rms), String.format("%.4f", hi));
+        }
+      } else {
+        voicedCount = 0;
+      }
+    }
+    return speaking;
+  }
+
+  // Only evaluated for loud frames while not speaking, so the FFT cost is not paid on silence.
+  // Package-private for VoiceActivityDetectorBenchmark
+  boolean speechLike(float[] block, int off, int len) {
+    int crossings = 0;
+    for (int i = off + 1; i < off + len; i++) {
+      if ((block[i - 1] < 0f) != (block[i] < 0f)) crossings++;
+    }
+    zcr = crossings / (float) (len - 1);
+
+    frontEnd.powerSpectrum(block, off, power);
+    double total = 0.0, band = 0.0, logSum = 0.0;
+    for (int k = 1; k < MelFrontEnd.N_BINS; k++) total += power[k];
+    for (int k = bandLo; k <= bandHi; k++) {
+      band += power[k];
+      logSum += Math.log(power[k] + 1e-12);
+    }
+    int bins = bandHi - bandLo + 1;
+    bandRatio = total > 0.0 ? (float) (band / total) : 0f;
+    // Geometric over arithmetic mean of the voice band: 1 for flat noise, near 0 for harmonics
+    flatness = band > 0.0 ? (float) (Math.exp(logSum / bins) / (band / bins)) : 1f;
+
+    return bandRatio >= MIN_BAND_RATIO && flatness <= MAX_FLATNESS && zcr <= MAX_ZCR;
+  }
+
+  /** Features of the last spectrally checked frame (debugging/tuning). */
+  public float lastBandRatio() { return bandRatio; }
+
+  public float lastFlatness() { return flatness; }
+
+  public float lastZeroCrossingRate() { return zcr; }
+}
@@ -1,10 +1,13 @@
 package com.yellspells.client;
 
 import com.yellspells.client.audio.AudioProcessor;
+import com.yellspells.client.commands.CalibrateCommand;
+import com.yellspells.client.commands.KeywordCommand;
 import com.yellspells.network.YellSpellsNetworking;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
 
 @Environment(EnvType.CLIENT)
 public final class YellSpellsClientMod implements ClientModInitializer {
@@ -15,6 +18,10 @@ public final class YellSpellsClientMod implements ClientModInitializer {
   public void onInitializeClient() {
     AUDIO = new AudioProcessor();           // resampler + VAD + STT worker inside
     YellSpellsNetworking.registerClient();  // session key receiver, intent sender
+    ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> {
+      KeywordCommand.register(dispatcher);
+      CalibrateCommand.register(dispatcher);
+    });
   }
 
   public static AudioProcessor audioProcessor() { return AUDIO; }
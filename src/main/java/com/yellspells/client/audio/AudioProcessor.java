@@ -1,7 +1,12 @@
 package com.yellspells.client.audio;
 
 import com.yellspells.YellSpellsMod;
+import com.yellspells.audio.AudioResampler;
+import com.yellspells.audio.PreRollBuffer;
+import com.yellspells.audio.UtteranceEndpointer;
+import com.yellspells.audio.VoiceActivityDetector;
 import com.yellspells.client.stt.SpeechToTextManager;
+import com.yellspells.config.YellSpellsConfig;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
@@ -9,40 +14,131 @@ import net.fabricmc.api.Environment;
 public final class AudioProcessor {
 
   private final AudioResampler resampler = new AudioResampler();
-  private final VoiceActivityDetector vad = new VoiceActivityDetector(0.005f, 0.003f, 6);
-  private final SpeechToTextManager stt = new SpeechToTextManager();
+  private final VoiceActivityDetector vad;
+  private final SpeechToTextManager stt;
+  // Null when endpointing is disabled; then fixed 320 ms batches are sent instead
+  private final UtteranceEndpointer endpointer;
 
-  // One batch ~320 ms @16k -> 5120 samples (multiple of 320)
+  // One batch ~320 ms @16k -> 5120 samples (multiple of 320); streaming sends one stride per batch
   private final float[] batchBuf = new float[5120];
+  private final int batchLimit;
   private int batchWrite = 0;
   private int frameCount = 0;
 
+  // Resampler output scratch, sized for one 20 ms SVC frame; only regrown if SVC changes frame size
+  private float[] out = new float[320];
+
+  // VAD gating: audio only reaches STT while speaking (plus pre-roll and hangover)
+  private final PreRollBuffer preRoll;
+  private final float[] preRollScratch;
+  private boolean gateOpen = false;
+  private int hangoverLeft = 0; // 20 ms frames
+
+  // Telemetry; written only by the SVC audio thread
+  private volatile long forwardedSamples = 0;
+  private volatile long skippedSamples = 0;
+
+  public AudioProcessor() {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    vad = new VoiceActivityDetector(0.005f, 0.003f, 6, "spectral".equals(cfg.vadMode) ? 320 : 0);
+    int preRollSamples = Math.max(0, cfg.vadPreRollMs) * 16;
+    preRoll = new PreRollBuffer(preRollSamples);
+    preRollScratch = new float[preRollSamples];
+
+    if (cfg.endpointing) {
+      batchLimit = batchBuf.length;
+      stt = new SpeechToTextManager(preRollSamples + Math.max(320, cfg.maxUtteranceMs * 16));
+      endpointer = new UtteranceEndpointer(stt::submitUtterance,
+          cfg.vadPreRollMs, cfg.minSpeechMs, cfg.minSilenceMs, cfg.maxUtteranceMs, cfg.partialIntervalMs);
+    } else {
+      batchLimit = Math.max(320, Math.min(batchBuf.length, cfg.streamStrideMs * 16 / 320 * 320));
+      stt = new SpeechToTextManager(batchBuf.length);
+      endpointer = null;
+    }
+  }
+
   // Called from SVC event (20ms @48k, 960 samples short[])
   public void onPcm48Frame(short[] pcm48) {
     frameCount++;
-    if (frameCount % 50 == 0) { // Log every second (50 * 20ms = 1s)
+    if (frameCount % 50 == 0 && YellSpellsMod.LOGGER.isDebugEnabled()) { // Log every second (50 * 20ms = 1s)
       YellSpellsMod.LOGGER.debug("AudioProcessor: Processing audio frame {} (length: {})", frameCount, pcm48.length);
     }
-    float[] out = new float[resampler.outLengthFor(pcm48.length)];
+    int need = resampler.outLengthFor(pcm48.length);
+    if (out.length < need) out = new float[need];
     int wrote = resampler.process(pcm48, out);
 
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    boolean gating = cfg.vadGating;
+    // The STT worker stretches the partial interval while decoding cannot keep up with it
+    if (endpointer != null) endpointer.setPartialIntervalMs(stt.getPartialIntervalMs());
+    int hangoverFrames = Math.max(0, cfg.vadHangoverMs) / 20;
+
     // chunk into 20ms@16k blocks (320 samples) and feed VAD/STT
     int i = 0;
     while (i + 320 <= wrote) {
-      boolean speaking = vad.update(out, 320);
+      boolean speaking = vad.update(out, i, 320);
 
-      // accumulate regardless; STT will do internal VAD too if desired
-      System.arraycopy(out, i, batchBuf, batchWrite, 320);
-      batchWrite += 320;
+      if (endpointer != null) {
+        endpointer.accept(out, i, speaking);
+      } else if (!gating) {
+        appendToBatch(out, i, 320, speaking);
+      } else if (speaking) {
+        if (!gateOpen) {
+          gateOpen = true;
+          int n = preRoll.copyTo(preRollScratch, 0);
+          preRoll.clear();
+          appendToBatch(preRollScratch, 0, n, true);
+        }
+        hangoverLeft = hangoverFrames;
+        appendToBatch(out, i, 320, true);
+      } else if (gateOpen && hangoverLeft > 0) {
+        hangoverLeft--;
+        appendToBatch(out, i, 320, false);
+      } else {
+        if (gateOpen) {
+          // Gate closes: hand over the tail instead of waiting for a full batch
+          gateOpen = false;
+          flushBatch(false);
+        }
+        preRoll.push(out, i, 320);
+        skippedSamples += 320;
+      }
       i += 320;
+    }
+  }
 
-      if (batchWrite >= batchBuf.length) {
-        YellSpellsMod.LOGGER.debug("AudioProcessor: Sending {} samples to STT (speaking: {})", batchWrite, speaking);
-        stt.pushBlock(batchBuf, batchWrite, speaking);
-        batchWrite = 0;
-      }
+  private void appendToBatch(float[] src, int off, int len, boolean speaking) {
+    while (len > 0) {
+      int n = Math.min(len, batchLimit - batchWrite);
+      System.arraycopy(src, off, batchBuf, batchWrite, n);
+      batchWrite += n;
+      off += n;
+      len -= n;
+      if (batchWrite >= batchLimit) flushBatch(speaking);
+    }
+  }
+
+  private void flushBatch(boolean speaking) {
+    if (batchWrite == 0) return;
+    if (YellSpellsMod.LOGGER.isDebugEnabled()) {
+      YellSpellsMod.LOGGER.debug("AudioProcessor: Sending {} samples to STT (speaking: {})", batchWrite, speaking);
     }
+    stt.pushBlock(batchBuf, batchWrite, speaking);
+    forwardedSamples += batchWrite;
+    batchWrite = 0;
   }
+
+  /** Samples (16 kHz) handed to STT since startup. */
+  public long getForwardedSamples() { return forwardedSamples; }
+
+  /** Samples (16 kHz) the VAD gate kept away from STT since startup. */
+  public long getSkippedSamples() {
+    return endpointer != null ? endpointer.getSkippedSamples() : skippedSamples;
+  }
+
+  public UtteranceEndpointer getEndpointer() { return endpointer; }
+
+  public SpeechToTextManager getSpeechToText() { return stt; }
   
   /**
    * Initialize STT with downloaded model (called after user consents to download)
@@ -0,0 +1,167 @@
+package com.yellspells.client.audio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer / single-consumer float ring.
+ * Producer: SVC audio thread. Consumer: the YellSpells-STT worker.
+ * Audio is framed into segments (a fixed-size block or a whole utterance) carrying a small tag.
+ * Writes are all-or-nothing; a segment that does not fit is dropped and counted as an overrun
+ * so the consumer never sees a torn block. The consumer parks while the ring is empty.
+ */
+public final class AudioRingBuffer {
+
+  private final float[] data;
+  private final int mask;
+
+  // Segment descriptors: (length << 8) | tag, plus System.nanoTime() at publish
+  private final long[] segments;
+  private final long[] segmentTimes;
+  private final int segMask;
+
+  // Monotonic positions; heads are only advanced by the consumer, tails only by the producer.
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong segHead = new AtomicLong();
+  private final AtomicLong segTail = new AtomicLong();
+
+  private final AtomicLong overruns = new AtomicLong();
+  private final AtomicLong droppedSamples = new AtomicLong();
+
+  private volatile Thread consumer;
+  private volatile boolean consumerParked = false;
+
+  // Consumer-owned: tag of the segment returned by the last read or skip
+  private int lastTag = 0;
+
+  /** @param minCapacity samples; rounded up to the next power of two */
+  public AudioRingBuffer(int minCapacity) {
+    int cap = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+    this.data = new float[cap];
+    this.mask = cap - 1;
+    this.segments = new long[256];
+    this.segmentTimes = new long[segments.length];
+    this.segMask = segments.length - 1;
+  }
+
+  public int capacity() { return data.length; }
+
+  /** Samples currently buffered. */
+  public int available() { return (int) (tail.get() - head.get()); }
+
+  /** Segments currently buffered. */
+  public int segmentsAvailable() { return (int) (segTail.get() - segHead.get()); }
+
+  // ===== Producer side =====
+
+  public boolean write(float[] src, int off, int len) {
+    return write(src, off, len, 0);
+  }
+
+  /** Publish {@code len} samples as one segment tagged {@code tag} (0..255). */
+  public boolean write(float[] src, int off, int len, int tag) {
+    long t = tail.get();
+    long st = segTail.get();
+    if (len > data.length - (int) (t - head.get()) || st - segHead.get() >= segments.length) {
+      overruns.incrementAndGet();
+      droppedSamples.addAndGet(len);
+      return false;
+    }
+    int pos = (int) (t & mask);
+    int first = Math.min(len, data.length - pos);
+    System.arraycopy(src, off, data, pos, first);
+    if (first < len) System.arraycopy(src, off + first, data, 0, len - first);
+    tail.lazySet(t + len);
+    segments[(int) (st & segMask)] = ((long) len << 8) | (tag & 0xFF);
+    segmentTimes[(int) (st & segMask)] = System.nanoTime();
+    // Full volatile store: orders the publish before the consumerParked read below
+    segTail.set(st + 1);
+
+    if (consumerParked) {
+      Thread c = consumer;
+      if (c != null) LockSupport.unpark(c);
+    }
+    return true;
+  }
+
+  // ===== Consumer side =====
+
+  /** Length of the next segment, or -1 if none is buffered. */
+  public int peekLength() {
+    long sh = segHead.get();
+    if (sh == segTail.get()) return -1;
+    return (int) (segments[(int) (sh & segMask)] >>> 8);
+  }
+
+  /**
+   * Read the next whole segment into {@code dst}; {@code dst} must hold {@link #peekLength()} samples.
+   * @return samples read, or 0 if no segment is buffered
+   */
+  public int read(float[] dst, int off) {
+    long sh = segHead.get();
+    if (sh == segTail.get()) return 0;
+    long desc = segments[(int) (sh & segMask)];
+    int n = (int) (desc >>> 8);
+    lastTag = (int) (desc & 0xFF);
+    long h = head.get();
+    int pos = (int) (h & mask);
+    int first = Math.min(n, data.length - pos);
+    System.arraycopy(data, pos, dst, off, first);
+    if (first < n) System.arraycopy(data, 0, dst, off + first, n - first);
+    head.lazySet(h + n);
+    segHead.lazySet(sh + 1);
+    return n;
+  }
+
+  /** Nanoseconds since the next segment was published, or -1 if none is buffered. */
+  public long peekAgeNanos(long nowNanos) {
+    long sh = segHead.get();
+    if (sh == segTail.get()) return -1;
+    return nowNanos - segmentTimes[(int) (sh & segMask)];
+  }
+
+  /**
+   * Discard the next segment without copying it (drop-oldest backpressure).
+   * @return samples discarded, or 0 if no segment is buffered
+   */
+  public int skip() {
+    long sh = segHead.get();
+    if (sh == segTail.get()) return 0;
+    long desc = segments[(int) (sh & segMask)];
+    int n = (int) (desc >>> 8);
+    lastTag = (int) (desc & 0xFF);
+    head.lazySet(head.get() + n);
+    segHead.lazySet(sh + 1);
+    return n;
+  }
+
+  /** Tag of the segment returned by the last {@link #read} or {@link #skip}. Consumer thread only. */
+  public int lastTag() { return lastTag; }
+
+  /**
+   * Park the calling (consumer) thread until a segment is readable, the timeout elapses,
+   * or the thread is unparked by someone else.
+   * @return true if a segment is available
+   */
+  public boolean awaitSegment(long timeout, TimeUnit unit) {
+    if (segmentsAvailable() > 0) return true;
+    consumer = Thread.currentThread();
+    consumerParked = true;
+    try {
+      // Re-check after publishing the parked flag so a concurrent write cannot be missed
+      if (segmentsAvailable() > 0) return true;
+      LockSupport.parkNanos(this, unit.toNanos(timeout));
+    } finally {
+      consumerParked = false;
+    }
+    return segmentsAvailable() > 0;
+  }
+
+  // ===== Telemetry =====
+
+  public long overruns() { return overruns.get(); }
+
+  public long droppedSamples() { return droppedSamples.get(); }
+}
@@ -0,0 +1,217 @@
+package com.yellspells.client.audio;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.audio.MelFrontEnd;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cheap pure-Java keyword spotter: MFCC features compared by DTW against templates the player
+ * recorded once per spell. Decides whether an utterance plausibly is one of the enrolled spell
+ * phrases without running whisper. Used on the STT worker only (not thread-safe), except
+ * that enrollment may be armed from any thread.
+ */
+public final class KeywordSpotter {
+
+  private static final int FRAME = 400;              // 25 ms @16k
+  private static final int HOP = 160;                // 10 ms
+  private static final int DIMS = MelFrontEnd.N_MFCC - 1; // c0 (loudness) dropped
+  private static final int MAX_TEMPLATES_PER_SPELL = 5;
+  private static final int FILE_VERSION = 1;
+
+  private final MelFrontEnd frontEnd = new MelFrontEnd(FRAME);
+  private final int maxFrames;
+  private final float[] frame = new float[FRAME];
+  private final float[] power = new float[MelFrontEnd.N_BINS];
+  private final float[] mel = new float[MelFrontEnd.N_MELS];
+  private final float[] ceps = new float[MelFrontEnd.N_MFCC];
+  private final float[] features;
+  private final float[] dtwPrev;
+  private final float[] dtwCur;
+
+  // spellId -> flattened [frames * DIMS] templates, most recent last
+  private final Map<String, List<float[]>> templates = new LinkedHashMap<>();
+
+  private volatile String pendingEnrollment;
+  private float lastDistance = Float.POSITIVE_INFINITY;
+
+  /** @param maxUtteranceSamples longest input that will be spotted or enrolled */
+  public KeywordSpotter(int maxUtteranceSamples) {
+    this.maxFrames = Math.max(1, (maxUtteranceSamples - FRAME) / HOP + 1);
+    this.features = new float[maxFrames * DIMS];
+    this.dtwPrev = new float[maxFrames + 1];
+    this.dtwCur = new float[maxFrames + 1];
+  }
+
+  public boolean hasTemplates() { return !templates.isEmpty(); }
+
+  public int templateCount(String spellId) {
+    List<float[]> list = templates.get(spellId);
+    return list == null ? 0 : list.size();
+  }
+
+  /** The next final utterance will be stored as a template for {@code spellId}. */
+  public void armEnrollment(String spellId) { pendingEnrollment = spellId; }
+
+  /** Spell id armed by {@link #armEnrollment}, consumed by this call; null if none. */
+  public String takePendingEnrollment() {
+    String s = pendingEnrollment;
+    pendingEnrollment = null;
+    return s;
+  }
+
+  public void enroll(String spellId, float[] pcm, int len) {
+    int frames = extract(pcm, len);
+    if (frames == 0) return;
+    float[] t = new float[frames * DIMS];
+    System.arraycopy(features, 0, t, 0, t.length);
+    List<float[]> list = templates.computeIfAbsent(spellId, k -> new ArrayList<>());
+    if (list.size() >= MAX_TEMPLATES_PER_SPELL) list.remove(0);
+    list.add(t);
+  }
+
+  public void clear(String spellId) { templates.remove(spellId); }
+
+  /**
+   * @return the enrolled spell whose closest template is within {@code threshold}
+   *         (mean per-frame DTW distance), or null
+   */
+  public String spot(float[] pcm, int len, float threshold) {
+    lastDistance = Float.POSITIVE_INFINITY;
+    int frames = extract(pcm, len);
+    if (frames == 0) return null;
+    String best = null;
+    for (Map.Entry<String, List<float[]>> e : templates.entrySet()) {
+      for (float[] t : e.getValue()) {
+        float d = dtw(features, frames, t, t.length / DIMS);
+        if (d < lastDistance) {
+          lastDistance = d;
+          best = e.getKey();
+        }
+      }
+    }
+    return lastDistance <= threshold ? best : null;
+  }
+
+  /** Distance of the best template in the last {@link #spot} call. */
+  public float lastDistance() { return lastDistance; }
+
+  // ===== Features =====
+
+  // MFCC (c1..c12) per 25 ms frame, pre-emphasized, with per-utterance mean/variance normalization
+  private int extract(float[] pcm, int len) {
+    int frames = len < FRAME ? 0 : Math.min(maxFrames, (len - FRAME) / HOP + 1);
+    for (int f = 0; f < frames; f++) {
+      int off = f * HOP;
+      frame[0] = pcm[off] - 0.97f * (off > 0 ? pcm[off - 1] : 0f);
+      for (int i = 1; i < FRAME; i++) frame[i] = pcm[off + i] - 0.97f * pcm[off + i - 1];
+      frontEnd.powerSpectrum(frame, 0, power);
+      frontEnd.logMel(power, mel);
+      frontEnd.mfcc(mel, ceps, 0);
+      System.arraycopy(ceps, 1, features, f * DIMS, DIMS);
+    }
+    for (int d = 0; d < DIMS && frames > 0; d++) {
+      float mean = 0f;
+      for (int f = 0; f < frames; f++) mean += features[f * DIMS + d];
+      mean /= frames;
+      float var = 0f;
+      for (int f = 0; f < frames; f++) {
+        float v = features[f * DIMS + d] - mean;
+        var += v * v;
+      }
+      float inv = 1f / (float) Math.sqrt(var / frames + 1e-6f);
+      for (int f = 0; f < frames; f++) features[f * DIMS + d] = (features[f * DIMS + d] - mean) * inv;
+    }
+    return frames;
+  }
+
+  // ===== DTW =====
+
+  // Sakoe-Chiba banded DTW over Euclidean frame distance, normalized by path length bound (n + m)
+  private float dtw(float[] a, int n, float[] b, int m) {
+    if (m > maxFrames) m = maxFrames;
+    int band = Math.max(Math.abs(n - m), Math.max(n, m) / 4) + 1;
+    final float inf = Float.POSITIVE_INFINITY;
+    float[] prev = dtwPrev;
+    float[] cur = dtwCur;
+    java.util.Arrays.fill(prev, 0, m + 1, inf);
+    prev[0] = 0f;
+    for (int i = 1; i <= n; i++) {
+      java.util.Arrays.fill(cur, 0, m + 1, inf);
+      int jFrom = Math.max(1, i - band);
+      int jTo = Math.min(m, i + band);
+      for (int j = jFrom; j <= jTo; j++) {
+        float cost = frameDistance(a, (i - 1) * DIMS, b, (j - 1) * DIMS);
+        float best = Math.min(prev[j - 1], Math.min(prev[j], cur[j - 1]));
+        cur[j] = cost + best;
+      }
+      float[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+    return prev[m] / (n + m);
+  }
+
+  private static float frameDistance(float[] a, int ao, float[] b, int bo) {
+    float acc = 0f;
+    for (int d = 0; d < DIMS; d++) {
+      float v = a[ao + d] - b[bo + d];
+      acc += v * v;
+    }
+    return (float) Math.sqrt(acc);
+  }
+
+  // ===== Persistence =====
+
+  public void save(Path file) {
+    try {
+      Files.createDirectories(file.getParent());
+      try (OutputStream os = Files.newOutputStream(file); DataOutputStream out = new DataOutputStream(os)) {
+        out.writeInt(FILE_VERSION);
+        int count = 0;
+        for (List<float[]> l : templates.values()) count += l.size();
+        out.writeInt(count);
+        for (Map.Entry<String, List<float[]>> e : templates.entrySet()) {
+          for (float[] t : e.getValue()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(t.length);
+            for (float v : t) out.writeFloat(v);
+          }
+        }
+      }
+    } catch (IOException e) {
+      YellSpellsMod.LOGGER.error("Failed to save keyword templates to {}", file, e);
+    }
+  }
+
+  public void load(Path file) {
+    if (!Files.exists(file)) return;
+    try (InputStream is = Files.newInputStream(file); DataInputStream in = new DataInputStream(is)) {
+      if (in.readInt() != FILE_VERSION) {
+        YellSpellsMod.LOGGER.warn("Ignoring keyword templates with unknown version: {}", file);
+        return;
+      }
+      templates.clear();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String spellId = in.readUTF();
+        float[] t = new float[in.readInt()];
+        for (int k = 0; k < t.length; k++) t[k] = in.readFloat();
+        templates.computeIfAbsent(spellId, s -> new ArrayList<>()).add(t);
+      }
+      YellSpellsMod.LOGGER.info("Loaded {} keyword templates from {}", count, file);
+    } catch (IOException e) {
+      YellSpellsMod.LOGGER.error("Failed to load keyword templates from {}", file, e);
+    }
+  }
+}
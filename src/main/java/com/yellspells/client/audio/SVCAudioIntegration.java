@@ -31,6 +31,7 @@ public final class SVCAudioIntegration implements VoicechatPlugin {
     reg.registerEvent(ClientVoicechatConnectionEvent.class, e -> {
       connected = e.isConnected();
       YellSpellsMod.LOGGER.info("SVC Connection changed: connected={}", connected);
+      if (connected) YellSpellsClientMod.audioProcessor().getSpeechToText().activate();
       
       // Show model download prompt when first connected (if model not available)
       if (connected && !hasShownPrompt) {
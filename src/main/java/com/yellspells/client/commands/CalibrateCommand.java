@@ -0,0 +1,26 @@
+package com.yellspells.client.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.yellspells.client.YellSpellsClientMod;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.text.Text;
+
+/**
+ * {@code /yellspells-calibrate} benchmarks the downloaded whisper models again and switches to the
+ * fastest model / thread count for this machine.
+ */
+@Environment(EnvType.CLIENT)
+public final class CalibrateCommand {
+  public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+    dispatcher.register(ClientCommandManager.literal("yellspells-calibrate")
+      .executes(ctx -> {
+        YellSpellsClientMod.audioProcessor().getSpeechToText().recalibrate();
+        ctx.getSource().sendFeedback(Text.literal("Calibrating voice recognition; spells are off until it finishes"));
+        return 1;
+      })
+    );
+  }
+}
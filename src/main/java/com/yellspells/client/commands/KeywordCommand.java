@@ -0,0 +1,51 @@
+package com.yellspells.client.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.yellspells.YellSpellsMod;
+import com.yellspells.client.YellSpellsClientMod;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.text.Text;
+
+/**
+ * {@code /yellspells-kws record <spell>} stores the next utterance as a keyword-spotting template,
+ * {@code /yellspells-kws clear <spell>} forgets them. Templates live on the client only.
+ */
+@Environment(EnvType.CLIENT)
+public final class KeywordCommand {
+  public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+    dispatcher.register(ClientCommandManager.literal("yellspells-kws")
+      .then(ClientCommandManager.literal("record")
+        .then(ClientCommandManager.argument("spell", StringArgumentType.word())
+          .executes(ctx -> {
+            String spell = StringArgumentType.getString(ctx, "spell");
+            if (!YellSpellsMod.getConfig().spells.containsKey(spell)) {
+              ctx.getSource().sendError(Text.literal("Unknown spell: " + spell));
+              return 0;
+            }
+            if (!YellSpellsMod.getConfig().endpointing) {
+              ctx.getSource().sendError(Text.literal("Keyword templates need endpointing enabled"));
+              return 0;
+            }
+            YellSpellsClientMod.audioProcessor().getSpeechToText().recordKeywordTemplate(spell);
+            ctx.getSource().sendFeedback(Text.literal("Say '" + spell + "' now"));
+            return 1;
+          })
+        )
+      )
+      .then(ClientCommandManager.literal("clear")
+        .then(ClientCommandManager.argument("spell", StringArgumentType.word())
+          .executes(ctx -> {
+            String spell = StringArgumentType.getString(ctx, "spell");
+            YellSpellsClientMod.audioProcessor().getSpeechToText().clearKeywordTemplates(spell);
+            ctx.getSource().sendFeedback(Text.literal("Cleared keyword templates for '" + spell + "'"));
+            return 1;
+          })
+        )
+      )
+    );
+  }
+}
@@ -18,6 +18,9 @@ public class ModelDownloadScreen extends Screen {
     private final Screen parent;
     private final ModelManager modelManager;
     private boolean downloading = false;
+    // Written by download threads, read while rendering
+    private volatile long downloadedBytes = 0;
+    private volatile long totalBytes = -1;
     
     public ModelDownloadScreen(Screen parent) {
         super(Text.literal("YellSpells Voice Model"));
@@ -70,8 +73,13 @@ public class ModelDownloadScreen extends Screen {
             centerX, centerY - 10, 0xFFFFFF);
         
         if (downloading) {
+            long done = downloadedBytes;
+            long total = totalBytes;
+            String status = total > 0
+                ? String.format("Downloading model... %.1f / %.1f MB (%d%%)", done / 1048576.0, total / 1048576.0, done * 100 / total)
+                : String.format("Downloading model... %.1f MB", done / 1048576.0);
             context.drawCenteredTextWithShadow(this.textRenderer,
-                Text.literal("Downloading model... Please wait.").formatted(Formatting.YELLOW),
+                Text.literal(status).formatted(Formatting.YELLOW),
                 centerX, centerY + 80, 0xFFFFFF);
         }
         
@@ -85,7 +93,10 @@ public class ModelDownloadScreen extends Screen {
         YellSpellsMod.LOGGER.info("User requested Whisper model download");
         
         // Start download in background
-        modelManager.getModelPath().thenAccept(modelPath -> {
+        modelManager.getModelPath((done, total) -> {
+            downloadedBytes = done;
+            totalBytes = total;
+        }).thenAccept(modelPath -> {
             MinecraftClient.getInstance().execute(() -> {
                 if (modelPath != null) {
                     // Initialize STT with downloaded model
@@ -8,7 +8,9 @@ import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 public final class ClientSender {
   private ClientSender() {}
 
+  /** Client thread. Dropped if the registry it was built against is gone (disconnected or replaced). */
   public static void sendIntent(CastIntentPacket pkt) {
+    if (!YellSpellsNetworking.hasClientSpellRegistry(pkt.registryVersion)) return;
     ClientPlayNetworking.send(pkt);
   }
 }
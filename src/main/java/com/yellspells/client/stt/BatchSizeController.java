@@ -0,0 +1,51 @@
+package com.yellspells.client.stt;
+
+/**
+ * Picks how much new audio to batch per decode from the measured inference time: the streaming
+ * stride with endpointing off, the partial interval with endpointing on.
+ * Decoding keeps up with real time only while decode time stays below the batch duration,
+ * so the batch widens when inference (or the queue behind it) falls behind and narrows back
+ * toward {@code minMs} (the configured audioBufferSize) while there is headroom and the
+ * batch + decode time still fits the latency target. Worker thread only.
+ */
+final class BatchSizeController {
+
+  private final int minMs;
+  private final int maxMs;
+  private final int targetLatencyMs;
+  private int currentMs;
+  private double avgDecodeMs = -1;
+
+  BatchSizeController(int minMs, int maxMs, int initialMs, int targetLatencyMs) {
+    this.minMs = Math.max(20, minMs);
+    this.maxMs = Math.max(this.minMs, maxMs);
+    this.targetLatencyMs = targetLatencyMs;
+    this.currentMs = clamp(initialMs);
+  }
+
+  int currentMs() { return currentMs; }
+
+  double averageDecodeMs() { return avgDecodeMs; }
+
+  /**
+   * @param decodeMs time the last decode took
+   * @param queuedMs audio still waiting in the queue behind it
+   * @return the batch duration to use next
+   */
+  int update(long decodeMs, long queuedMs) {
+    avgDecodeMs = avgDecodeMs < 0 ? decodeMs : avgDecodeMs * 0.7 + decodeMs * 0.3;
+
+    if (avgDecodeMs > currentMs * 0.8 || queuedMs > currentMs) {
+      // Falling behind real time: fewer, larger batches
+      currentMs = clamp((int) Math.ceil(currentMs * 1.25));
+    } else if (avgDecodeMs < currentMs * 0.4 && currentMs * 0.9 + avgDecodeMs <= targetLatencyMs) {
+      // Plenty of headroom: decode more often for earlier results
+      currentMs = clamp((int) (currentMs * 0.9));
+    }
+    return currentMs;
+  }
+
+  private int clamp(int ms) {
+    return Math.max(minMs, Math.min(maxMs, ms));
+  }
+}
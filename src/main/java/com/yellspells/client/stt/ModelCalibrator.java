@@ -0,0 +1,205 @@
+package com.yellspells.client.stt;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.config.YellSpellsConfig;
+import com.yellspells.stt.WhisperJNI;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks the whisper model and thread count for this machine by measurement. Every model already
+ * in the model directory (e.g. tiny.en in f16 and its q5/q8 quantizations) is decoded on a
+ * synthetic 2 s shout with 1, 2, 4, ... threads, up to one less than the core count. Each run
+ * records the decode time and how much the game's frame rate dropped while it ran.
+ *
+ * <p>The fastest run that keeps at least {@link #MIN_FPS_KEPT} of the frame rate wins (the fastest
+ * overall if none does), and is expected to decode within targetLatencyMs; a warning is logged when
+ * even it does not. The choice is tied to a fingerprint of the CPU and the model files, so it is only
+ * redone when one of them changes, or on request.
+ */
+@Environment(EnvType.CLIENT)
+final class ModelCalibrator {
+
+  /** One measured model / thread count combination. */
+  record Run(String model, int threads, long decodeMillis, float fpsKept) {
+    float realTimeFactor() { return decodeMillis / (float) (BENCH_SAMPLES / 16); }
+
+    @Override
+    public String toString() {
+      return String.format("%s x%d: %d ms (RTF %.2f, %.0f%% fps)", model, threads, decodeMillis, realTimeFactor(), fpsKept * 100);
+    }
+  }
+
+  private static final int BENCH_SAMPLES = 2 * 16000;
+  // Each combination decodes repeatedly for at least this long, so the once-a-second FPS counter covers it
+  private static final long MIN_RUN_NANOS = 1_200_000_000L;
+  private static final int MIN_DECODES = 3;
+  private static final float MIN_FPS_KEPT = 0.8f;
+
+  private final ModelManager models;
+
+  ModelCalibrator(ModelManager models) {
+    this.models = models;
+  }
+
+  /** Identifies what a calibration result is valid for: CPU and the set of local models. */
+  String fingerprint() {
+    return Runtime.getRuntime().availableProcessors() + "/" + System.getProperty("os.arch") + "/"
+        + String.join(",", models.localModels());
+  }
+
+  /**
+   * Benchmark every local model and store the winner in the config as modelName and sttThreads.
+   * Blocks for a few seconds per model; call on a background thread.
+   * @return the chosen run, or null if nothing could be measured (config unchanged)
+   */
+  Run calibrate() {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    List<String> names = models.localModels();
+    int[] threadCounts = threadCounts(Runtime.getRuntime().availableProcessors());
+    YellSpellsMod.LOGGER.info("STT calibration: models {}, threads {}", names, Arrays.toString(threadCounts));
+
+    FloatBuffer audio = ByteBuffer.allocateDirect(4 * BENCH_SAMPLES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    audio.put(syntheticShout(BENCH_SAMPLES));
+    ByteBuffer text = ByteBuffer.allocateDirect(2048).order(ByteOrder.nativeOrder());
+    float[] confStable = new float[2];
+    int audioCtx = cfg.adaptiveAudioContext ? WhisperJNI.audioContextFor(BENCH_SAMPLES) : 0;
+    int baselineFps = settledFps();
+
+    List<Run> runs = new ArrayList<>();
+    for (String name : names) {
+      String path = models.modelPath(name).toString();
+      WhisperJNI whisper = new WhisperJNI();
+      try {
+        for (int threads : threadCounts) {
+          // Extra states share the loaded model; without them the context is re-created per thread count
+          WhisperJNI.State state = whisper.available() ? whisper.createState(threads) : null;
+          if (state == null) {
+            whisper.init(path, 16000, threads);
+            if (!whisper.available()) break;
+            whisper.configureForSpells(cfg); // decode the way casts are decoded: keyword prompt, length cap
+          }
+          try {
+            long millis = measure(whisper, state, audio, audioCtx, text, confStable);
+            if (millis < 0) break;
+            float fpsKept = baselineFps > 0 ? Math.min(1f, MinecraftClient.getInstance().getCurrentFps() / (float) baselineFps) : 1f;
+            Run run = new Run(name, threads, millis, fpsKept);
+            runs.add(run);
+            YellSpellsMod.LOGGER.info("STT calibration: {}", run);
+          } finally {
+            if (state != null) state.close();
+          }
+        }
+      } catch (RuntimeException e) {
+        YellSpellsMod.LOGGER.warn("STT calibration: model {} failed", name, e);
+      } finally {
+        whisper.close();
+      }
+    }
+
+    Run best = choose(runs);
+    if (best == null) {
+      YellSpellsMod.LOGGER.warn("STT calibration: nothing could be measured; keeping {} with {} threads", cfg.modelName, cfg.sttThreads);
+      return null;
+    }
+    if (best.decodeMillis() > cfg.targetLatencyMs) {
+      YellSpellsMod.LOGGER.warn("STT calibration: no model decodes a 2 s shout within targetLatencyMs ({} ms) here", cfg.targetLatencyMs);
+    }
+    cfg.modelName = best.model();
+    cfg.sttThreads = best.threads();
+    cfg.calibratedFor = fingerprint();
+    cfg.save();
+    YellSpellsMod.LOGGER.info("STT calibration: chose {}", best);
+    return best;
+  }
+
+  // Mean decode time after one untimed decode, or -1 if this library cannot decode utterances
+  private static long measure(WhisperJNI whisper, WhisperJNI.State state, FloatBuffer audio, int audioCtx,
+      ByteBuffer text, float[] confStable) {
+    if (decode(whisper, state, audio, audioCtx, text, confStable) < 0) return -1;
+    long start = System.nanoTime();
+    int decodes = 0;
+    long elapsed;
+    do {
+      decode(whisper, state, audio, audioCtx, text, confStable);
+      decodes++;
+      elapsed = System.nanoTime() - start;
+    } while (decodes < MIN_DECODES || elapsed < MIN_RUN_NANOS);
+    return elapsed / decodes / 1_000_000;
+  }
+
+  private static int decode(WhisperJNI whisper, WhisperJNI.State state, FloatBuffer audio, int audioCtx,
+      ByteBuffer text, float[] confStable) {
+    audio.clear();
+    text.clear();
+    return state != null
+        ? state.decode(audio, BENCH_SAMPLES, audioCtx, text, confStable)
+        : whisper.decode(audio, BENCH_SAMPLES, audioCtx, text, confStable);
+  }
+
+  // Fastest run that spares the frame rate, else the fastest run; null if there are none
+  static Run choose(List<Run> runs) {
+    Run sparesFps = null, fastest = null;
+    for (Run r : runs) {
+      if (fastest == null || r.decodeMillis() < fastest.decodeMillis()) fastest = r;
+      if (r.fpsKept() >= MIN_FPS_KEPT && (sparesFps == null || r.decodeMillis() < sparesFps.decodeMillis())) sparesFps = r;
+    }
+    return sparesFps != null ? sparesFps : fastest;
+  }
+
+  // 1, 2, 4, ... and the largest count that still leaves a core for the render thread
+  static int[] threadCounts(int cores) {
+    int max = Math.max(1, cores - 1);
+    List<Integer> counts = new ArrayList<>();
+    for (int t = 1; t < max; t *= 2) counts.add(t);
+    counts.add(max);
+    return counts.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  // Frame rate over the last full second, after giving the counter a second to settle; 0 if not rendering
+  private static int settledFps() {
+    try {
+      Thread.sleep(1100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return MinecraftClient.getInstance().getCurrentFps();
+  }
+
+  /**
+   * Speech-like test signal: a 130 Hz voice with vowel formants, syllable-rate amplitude
+   * modulation and a little noise. The encoder's cost only depends on the length, but the decoder
+   * has to produce tokens for it to be timed realistically, which silence would not make it do.
+   */
+  static float[] syntheticShout(int samples) {
+    float[] out = new float[samples];
+    Random noise = new Random(7);
+    double f0 = 130;
+    double[] formants = {700, 1200, 2600};
+    for (int i = 0; i < samples; i++) {
+      double t = i / 16000.0;
+      double v = 0;
+      for (int h = 1; h * f0 < 4000; h++) {
+        double f = h * f0;
+        double gain = 0;
+        for (double fm : formants) gain += 1 / (1 + Math.pow((f - fm) / 150, 2));
+        v += gain * Math.sin(2 * Math.PI * f * t) / h;
+      }
+      double syllable = 0.5 * (1 - Math.cos(2 * Math.PI * 4 * t)); // ~4 syllables per second
+      out[i] = (float) (0.3 * syllable * v + 0.01 * noise.nextGaussian());
+    }
+    float peak = 0;
+    for (float s : out) peak = Math.max(peak, Math.abs(s));
+    if (peak > 0) for (int i = 0; i < samples; i++) out[i] *= 0.5f / peak;
+    return out;
+  }
+}
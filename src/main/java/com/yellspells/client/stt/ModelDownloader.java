@@ -0,0 +1,379 @@
+package com.yellspells.client.stt;
+
+import com.yellspells.YellSpellsMod;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Downloads one large file (the whisper model) into {@code <target>.part} over several HTTP
+ * connections, one byte range (chunk) at a time, and moves it onto {@code target} only after its
+ * length and SHA-256 check out, so a truncated or corrupt file is never visible under the final name.
+ *
+ * <p>Progress per chunk is saved next to the part file, so an interrupted download resumes from the
+ * middle of each chunk instead of starting over. The hash is computed while downloading: the
+ * contiguous prefix of the part file is fed to SHA-256 as soon as the chunks ahead of it are complete.
+ *
+ * <p>The expected hash is the configured one, or else the one the host publishes for the file
+ * (Hugging Face sends it as {@code X-Linked-ETag}); with neither, only the length is checked.
+ * Servers without range support get a single-connection download that cannot resume.
+ */
+public final class ModelDownloader {
+
+  public interface Progress {
+    /** Called from download threads; {@code total} is -1 while unknown. */
+    void onProgress(long downloaded, long total);
+  }
+
+  private static final int CHUNK_SIZE = 4 << 20;
+  private static final int BUFFER_SIZE = 64 << 10;
+  private static final int MAX_ATTEMPTS = 4;
+  private static final int MAX_REDIRECTS = 5;
+  private static final int TIMEOUT_MILLIS = 30_000;
+  private static final long STATE_SAVE_NANOS = 2_000_000_000L;
+  private static final int STATE_MAGIC = 0x59535044; // "YSPD"
+
+  private final URI uri;
+  private final Path target;
+  private final Path part;
+  private final Path state;
+  private final int connections;
+  private final String configuredSha256;
+  private final Progress progress;
+  private final int chunkSize;
+  private final int maxAttempts;
+
+  /**
+   * @param sha256 expected hex digest, or null/empty to use the one published by the host
+   */
+  public ModelDownloader(URI uri, Path target, int connections, String sha256, Progress progress) {
+    this(uri, target, connections, sha256, progress, CHUNK_SIZE, MAX_ATTEMPTS);
+  }
+
+  /** With the chunk size and attempts per chunk given, e.g. small ones for tests. */
+  ModelDownloader(URI uri, Path target, int connections, String sha256, Progress progress, int chunkSize, int maxAttempts) {
+    this.uri = uri;
+    this.target = target;
+    this.part = target.resolveSibling(target.getFileName() + ".part");
+    this.state = target.resolveSibling(target.getFileName() + ".part.state");
+    this.connections = Math.max(1, connections);
+    this.configuredSha256 = sha256 == null || sha256.isBlank() ? null : sha256.trim().toLowerCase(Locale.ROOT);
+    this.progress = progress != null ? progress : (downloaded, total) -> { };
+    this.chunkSize = chunkSize;
+    this.maxAttempts = Math.max(1, maxAttempts);
+  }
+
+  /**
+   * Download and verify. On a network error the part file and its progress are kept for the next
+   * call; on a length or hash mismatch they are deleted.
+   * @return {@code target}
+   */
+  public Path download() throws IOException, InterruptedException {
+    Remote remote = probe();
+    String expected = configuredSha256 != null ? configuredSha256 : remote.sha256();
+    if (expected == null) {
+      YellSpellsMod.LOGGER.warn("No SHA-256 known for {}; only its length will be checked", uri);
+    }
+    Files.createDirectories(target.toAbsolutePath().getParent());
+    long start = System.nanoTime();
+    byte[] digest = remote.ranges() && remote.length() > 0
+        ? downloadChunks(remote, expected)
+        : downloadSingle(remote);
+    verifyAndMove(remote, expected, digest);
+    YellSpellsMod.LOGGER.info("Downloaded {} ({} bytes) in {} ms", target.getFileName(), remote.length(),
+        (System.nanoTime() - start) / 1_000_000);
+    return target;
+  }
+
+  // ===== Probe =====
+
+  private record Remote(URI uri, long length, boolean ranges, String sha256, String validator) {}
+
+  // HEAD through the redirects by hand: the digest header is on the first hop, the size on the last
+  private Remote probe() throws IOException {
+    URI current = uri;
+    String sha256 = null;
+    String validator = null;
+    for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+      HttpURLConnection c = open(current, "HEAD");
+      try {
+        String linked = c.getHeaderField("X-Linked-ETag");
+        if (linked != null) {
+          if (sha256 == null) sha256 = sha256Etag(linked);
+          if (validator == null) validator = linked;
+        }
+        int code = c.getResponseCode();
+        if (code >= 300 && code < 400) {
+          String location = c.getHeaderField("Location");
+          if (location == null) throw new IOException("Redirect without Location from " + current);
+          current = current.resolve(location);
+          continue;
+        }
+        if (code != 200) throw new IOException("HTTP " + code + " for " + current);
+        long length = c.getContentLengthLong();
+        String acceptRanges = c.getHeaderField("Accept-Ranges");
+        boolean ranges = acceptRanges != null && acceptRanges.contains("bytes");
+        String etag = c.getHeaderField("ETag");
+        if (sha256 == null && etag != null) sha256 = sha256Etag(etag);
+        if (validator == null) validator = etag != null ? etag : "";
+        return new Remote(current, length, ranges, sha256, validator + "/" + length);
+      } finally {
+        c.disconnect();
+      }
+    }
+    throw new IOException("Too many redirects from " + uri);
+  }
+
+  // An ETag that is exactly a SHA-256 (as for Hugging Face LFS files), else null
+  private static String sha256Etag(String etag) {
+    String v = etag.trim();
+    if (v.startsWith("W/")) return null;
+    v = v.replace("\"", "").toLowerCase(Locale.ROOT);
+    return v.matches("[0-9a-f]{64}") ? v : null;
+  }
+
+  // ===== Ranged download =====
+
+  private byte[] downloadChunks(Remote remote, String expected) throws IOException, InterruptedException {
+    long length = remote.length();
+    int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+    AtomicLongArray done = loadState(remote, chunks);
+    AtomicLong downloaded = new AtomicLong();
+    ConcurrentLinkedQueue<Integer> todo = new ConcurrentLinkedQueue<>();
+    for (int k = 0; k < chunks; k++) {
+      downloaded.addAndGet(done.get(k));
+      if (done.get(k) < chunkLength(k, length)) todo.add(k);
+    }
+    if (downloaded.get() > 0) {
+      YellSpellsMod.LOGGER.info("Resuming model download at {} of {} bytes", downloaded.get(), length);
+    }
+    progress.onProgress(downloaded.get(), length);
+
+    MessageDigest sha = sha256();
+    AtomicReference<IOException> failure = new AtomicReference<>();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(connections, Math.max(1, todo.size())), r -> {
+      Thread t = new Thread(r, "YellSpells-Download");
+      t.setDaemon(true);
+      return t;
+    });
+    try (FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      for (int i = 0; i < connections; i++) {
+        pool.execute(() -> {
+          Integer k;
+          while (failure.get() == null && (k = todo.poll()) != null) {
+            try {
+              fetchChunk(remote, file, k, done, downloaded, length);
+            } catch (IOException e) {
+              failure.compareAndSet(null, e);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+        });
+      }
+      pool.shutdown();
+
+      // Hash the contiguous prefix as it grows; save progress now and then
+      long hashed = 0;
+      long lastSave = System.nanoTime();
+      ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      while (true) {
+        boolean finished = pool.awaitTermination(50, TimeUnit.MILLISECONDS);
+        long frontier = frontier(done, chunks, length);
+        while (hashed < frontier) {
+          buf.clear().limit((int) Math.min(BUFFER_SIZE, frontier - hashed));
+          int n = file.read(buf, hashed);
+          if (n <= 0) throw new IOException("Part file shorter than recorded progress");
+          buf.flip();
+          sha.update(buf);
+          hashed += n;
+        }
+        if (finished || System.nanoTime() - lastSave > STATE_SAVE_NANOS) {
+          file.force(false); // data first, so the state never claims bytes that are not on disk
+          saveState(remote, done);
+          lastSave = System.nanoTime();
+        }
+        if (finished) break;
+      }
+      if (failure.get() != null) throw failure.get();
+      if (hashed != length) throw new IOException("Download incomplete: " + hashed + " of " + length + " bytes");
+      file.force(true);
+    } finally {
+      pool.shutdownNow();
+    }
+    return sha.digest();
+  }
+
+  private void fetchChunk(Remote remote, FileChannel file, int k, AtomicLongArray done, AtomicLong downloaded, long length)
+      throws IOException, InterruptedException {
+    long chunkStart = (long) k * chunkSize;
+    long chunkEnd = chunkStart + chunkLength(k, length); // exclusive
+    for (int attempt = 1; ; attempt++) {
+      long from = chunkStart + done.get(k);
+      if (from >= chunkEnd) return;
+      HttpURLConnection c = open(remote.uri(), "GET");
+      try {
+        c.setRequestProperty("Range", "bytes=" + from + "-" + (chunkEnd - 1));
+        if (c.getResponseCode() != 206) throw new IOException("HTTP " + c.getResponseCode() + " for range request");
+        try (InputStream in = c.getInputStream()) {
+          byte[] bytes = new byte[BUFFER_SIZE];
+          long pos = from;
+          int n;
+          while (pos < chunkEnd && (n = in.read(bytes, 0, (int) Math.min(bytes.length, chunkEnd - pos))) > 0) {
+            ByteBuffer src = ByteBuffer.wrap(bytes, 0, n);
+            while (src.hasRemaining()) pos += file.write(src, pos);
+            done.addAndGet(k, n);
+            progress.onProgress(downloaded.addAndGet(n), length);
+          }
+          if (pos < chunkEnd) throw new IOException("Connection closed at byte " + pos + " of chunk ending at " + chunkEnd);
+        }
+        return;
+      } catch (IOException e) {
+        c.disconnect(); // do not hand a half-read connection back to the keep-alive cache
+        if (attempt >= maxAttempts) throw e;
+        YellSpellsMod.LOGGER.warn("Model download: chunk {} failed (attempt {}), retrying: {}", k, attempt, e.getMessage());
+        Thread.sleep(1000L * attempt);
+      }
+    }
+  }
+
+  private long chunkLength(int k, long length) {
+    return Math.min(chunkSize, length - (long) k * chunkSize);
+  }
+
+  // End of the downloaded prefix: every chunk before the first incomplete one is complete
+  private long frontier(AtomicLongArray done, int chunks, long length) {
+    for (int k = 0; k < chunks; k++) {
+      long d = done.get(k);
+      if (d < chunkLength(k, length)) return (long) k * chunkSize + d;
+    }
+    return length;
+  }
+
+  // ===== Resume state =====
+
+  // Progress of a previous attempt at the same remote file, or all zeros
+  private AtomicLongArray loadState(Remote remote, int chunks) {
+    AtomicLongArray done = new AtomicLongArray(chunks);
+    if (!Files.exists(state) || !Files.exists(part)) return done;
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(state))) {
+      if (in.readInt() != STATE_MAGIC || !in.readUTF().equals(remote.validator())
+          || in.readInt() != chunkSize || in.readInt() != chunks) {
+        YellSpellsMod.LOGGER.info("Model download: remote file changed, starting over");
+        return new AtomicLongArray(chunks);
+      }
+      long partSize = Files.size(part);
+      for (int k = 0; k < chunks; k++) {
+        long d = Math.max(0, Math.min(in.readLong(), chunkLength(k, remote.length())));
+        // Never trust progress past the end of what is actually in the part file
+        done.set(k, (long) k * chunkSize + d <= partSize ? d : 0);
+      }
+    } catch (IOException e) {
+      YellSpellsMod.LOGGER.warn("Model download: unreadable progress file, starting over", e);
+      return new AtomicLongArray(chunks);
+    }
+    return done;
+  }
+
+  private void saveState(Remote remote, AtomicLongArray done) throws IOException {
+    Path tmp = state.resolveSibling(state.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+      out.writeInt(STATE_MAGIC);
+      out.writeUTF(remote.validator());
+      out.writeInt(chunkSize);
+      out.writeInt(done.length());
+      for (int k = 0; k < done.length(); k++) out.writeLong(done.get(k));
+    }
+    move(tmp, state);
+  }
+
+  // ===== Single connection =====
+
+  private byte[] downloadSingle(Remote remote) throws IOException {
+    MessageDigest sha = sha256();
+    HttpURLConnection c = open(remote.uri(), "GET");
+    if (c.getResponseCode() != 200) throw new IOException("HTTP " + c.getResponseCode() + " for " + remote.uri());
+    try (InputStream in = c.getInputStream();
+         FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+             StandardOpenOption.TRUNCATE_EXISTING)) {
+      byte[] bytes = new byte[BUFFER_SIZE];
+      long total = 0;
+      int n;
+      while ((n = in.read(bytes)) > 0) {
+        sha.update(bytes, 0, n);
+        ByteBuffer src = ByteBuffer.wrap(bytes, 0, n);
+        while (src.hasRemaining()) file.write(src);
+        total += n;
+        progress.onProgress(total, remote.length());
+      }
+      file.force(true);
+    }
+    return sha.digest();
+  }
+
+  // A read timeout applies to every read of the body, so a connection that stalls mid-transfer fails
+  // and is retried instead of blocking its worker forever
+  private static HttpURLConnection open(URI uri, String method) throws IOException {
+    HttpURLConnection c = (HttpURLConnection) uri.toURL().openConnection();
+    c.setRequestMethod(method);
+    c.setInstanceFollowRedirects(false);
+    c.setConnectTimeout(TIMEOUT_MILLIS);
+    c.setReadTimeout(TIMEOUT_MILLIS);
+    return c;
+  }
+
+  // ===== Verify =====
+
+  private void verifyAndMove(Remote remote, String expected, byte[] digest) throws IOException {
+    long size = Files.size(part);
+    String actual = HexFormat.of().formatHex(digest);
+    if ((remote.length() > 0 && size != remote.length()) || (expected != null && !expected.equals(actual))) {
+      Files.deleteIfExists(part);
+      Files.deleteIfExists(state);
+      throw new IOException("Downloaded model failed verification (size " + size + ", sha256 " + actual
+          + (expected != null ? ", expected " + expected : "") + ")");
+    }
+    move(part, target);
+    Files.deleteIfExists(state);
+    YellSpellsMod.LOGGER.info("Model verified (sha256 {})", actual);
+  }
+
+  private static void move(Path from, Path to) throws IOException {
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JRE has SHA-256
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.yellspells.client.stt;
 
 import com.yellspells.YellSpellsMod;
+import com.yellspells.config.YellSpellsConfig;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
@@ -8,30 +9,34 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Environment(EnvType.CLIENT)
 public class ModelManager {
     
-    // Whisper tiny.en model from Hugging Face
-    private static final String MODEL_URL = "https://huggingface.co/ggerganov/whisper.cpp/resolve/main/ggml-tiny.en.bin";
-    private static final String MODEL_SHA256 = "921e4cf2e068bcb2fb4ee2f85d8c5d1e33a0995b0c8f28a6a1e8e2c5c0f2e6a8"; // Example hash
-    private static final String MODEL_FILENAME = "ggml-tiny.en.bin";
+    // Whisper models (ggml-<modelName>.bin) from Hugging Face
+    private static final String MODEL_BASE_URL = "https://huggingface.co/ggerganov/whisper.cpp/resolve/main/";
+    private static final String DEFAULT_MODEL = "tiny.en";
+    
+    // One download per model file, shared by everyone asking for that model while it runs
+    private static final Map<Path, Download> inFlight = new HashMap<>();
     
     private final Path modelDir;
-    private final Path modelPath;
     
     public ModelManager() {
         // Store models in .minecraft/yellspells/models/
         this.modelDir = Paths.get(MinecraftClient.getInstance().runDirectory.getPath(), "yellspells", "models");
-        this.modelPath = modelDir.resolve(MODEL_FILENAME);
         
         try {
             Files.createDirectories(modelDir);
@@ -44,15 +49,60 @@ public class ModelManager {
      * Gets the path to the Whisper model, downloading it if necessary
      */
     public CompletableFuture<String> getModelPath() {
+        return getModelPath(null);
+    }
+    
+    /**
+     * Gets the path to the Whisper model, downloading it if necessary and reporting download
+     * progress to {@code progress} (called from download threads; may be null)
+     */
+    public CompletableFuture<String> getModelPath(ModelDownloader.Progress progress) {
+        Path modelPath = modelPath();
         if (Files.exists(modelPath)) {
             YellSpellsMod.LOGGER.info("Whisper model found at: {}", modelPath);
             return CompletableFuture.completedFuture(modelPath.toString());
         }
         
-        return promptAndDownloadModel();
+        synchronized (ModelManager.class) {
+            Download download = inFlight.get(modelPath);
+            if (download == null || download.result.isDone()) {
+                download = new Download();
+                inFlight.put(modelPath, download);
+                download.result = promptAndDownloadModel(modelPath, download);
+            }
+            // A caller joining a running download is first told how far it already got
+            download.subscribe(progress);
+            return download.result;
+        }
+    }
+    
+    /**
+     * A running download and everyone following its progress. Keeps the latest report, so a caller
+     * that joins late (e.g. the download screen after a chat prompt started it) starts from there.
+     */
+    private static final class Download implements ModelDownloader.Progress {
+        private final List<ModelDownloader.Progress> listeners = new CopyOnWriteArrayList<>();
+        private volatile long downloaded = 0;
+        private volatile long total = -1;
+        private volatile boolean reported = false;
+        private CompletableFuture<String> result;
+        
+        void subscribe(ModelDownloader.Progress listener) {
+            if (listener == null) return;
+            listeners.add(listener);
+            if (reported) listener.onProgress(downloaded, total);
+        }
+        
+        @Override
+        public void onProgress(long downloaded, long total) {
+            this.downloaded = downloaded;
+            this.total = total;
+            reported = true;
+            for (ModelDownloader.Progress listener : listeners) listener.onProgress(downloaded, total);
+        }
     }
     
-    private CompletableFuture<String> promptAndDownloadModel() {
+    private CompletableFuture<String> promptAndDownloadModel(Path modelPath, ModelDownloader.Progress progress) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 // Show chat message to user
@@ -66,13 +116,14 @@ public class ModelManager {
                     }
                 });
                 
-                YellSpellsMod.LOGGER.info("Downloading Whisper model from: {}", MODEL_URL);
+                String modelUrl = MODEL_BASE_URL + modelPath.getFileName();
+                YellSpellsMod.LOGGER.info("Downloading Whisper model from: {}", modelUrl);
                 
-                // Download the model
-                URL url = new URL(MODEL_URL);
-                try (InputStream in = url.openStream()) {
-                    Files.copy(in, modelPath, StandardCopyOption.REPLACE_EXISTING);
-                }
+                // Ranged parallel download into a .part file; only a verified file is moved to modelPath
+                YellSpellsConfig config = YellSpellsMod.getConfig();
+                String sha256 = config.modelSha256.get(modelName(modelPath));
+                new ModelDownloader(URI.create(modelUrl), modelPath, config.downloadConnections, sha256, progress)
+                    .download();
                 
                 // Verify file exists and has reasonable size
                 if (Files.exists(modelPath) && Files.size(modelPath) > 1024 * 1024) { // At least 1MB
@@ -117,13 +168,52 @@ public class ModelManager {
      * Check if the model is available without triggering download
      */
     public boolean isModelAvailable() {
-        return Files.exists(modelPath);
+        return Files.exists(modelPath());
     }
     
     /**
      * Get the model path if it exists, null otherwise
      */
     public String getModelPathIfExists() {
+        Path modelPath = modelPath();
         return Files.exists(modelPath) ? modelPath.toString() : null;
     }
+    
+    /**
+     * File of the configured {@code modelName}. Re-read on every call, since calibration may switch models.
+     */
+    public Path modelPath() {
+        return modelPath(YellSpellsMod.getConfig().modelName);
+    }
+    
+    public Path modelPath(String modelName) {
+        // The name becomes part of a file name and URL; anything odd falls back to the default model
+        if (modelName == null || !modelName.matches("[A-Za-z0-9._-]+") || modelName.contains("..")) {
+            YellSpellsMod.LOGGER.warn("Invalid modelName '{}', using {}", modelName, DEFAULT_MODEL);
+            modelName = DEFAULT_MODEL;
+        }
+        return modelDir.resolve("ggml-" + modelName + ".bin");
+    }
+    
+    /**
+     * Names of the models already in the model directory (e.g. "tiny.en", "tiny.en-q5_1"), sorted
+     */
+    public List<String> localModels() {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(modelDir, "ggml-*.bin")) {
+            for (Path file : files) {
+                names.add(modelName(file));
+            }
+        } catch (IOException e) {
+            YellSpellsMod.LOGGER.warn("Failed to list models in {}", modelDir, e);
+        }
+        Collections.sort(names);
+        return names;
+    }
+    
+    /** Model name of a ggml-&lt;name&gt;.bin file */
+    private static String modelName(Path modelFile) {
+        String name = modelFile.getFileName().toString();
+        return name.substring("ggml-".length(), name.length() - ".bin".length());
+    }
 }
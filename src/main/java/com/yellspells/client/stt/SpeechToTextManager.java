@@ -1,140 +1,728 @@
 package com.yellspells.client.stt;
 
 import com.yellspells.YellSpellsMod;
+import com.yellspells.client.audio.AudioRingBuffer;
+import com.yellspells.client.audio.KeywordSpotter;
+import com.yellspells.config.YellSpellsConfig;
 import com.yellspells.network.YellSpellsNetworking;
 import com.yellspells.network.packets.CastIntentPacket;
+import com.yellspells.stt.SpellDetector;
+import com.yellspells.stt.WhisperJNI;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.CharBuffer;
 import java.nio.FloatBuffer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 @Environment(EnvType.CLIENT)
 public final class SpeechToTextManager {
 
+  // Ring segment tags; the speaking state travels with its audio, not in a shared field
+  private static final int TAG_BLOCK = 0;          // fixed-size streaming block (endpointing off), no speech
+  private static final int TAG_PARTIAL = 1;        // utterance so far, speaker still talking
+  private static final int TAG_FINAL = 2;          // complete utterance
+  private static final int TAG_SPEAKING_BLOCK = 3; // streaming block the VAD heard speech in
+
+  // Transcripts below this whisper confidence never cast
+  private static final float MIN_CONFIDENCE = 0.65f;
+
   private final WhisperJNI whisper = new WhisperJNI();
   private final ModelManager modelManager = new ModelManager();
-  private final ExecutorService exec = Executors.newSingleThreadExecutor(r -> new Thread(r, "YellSpells-STT"));
+  private final ModelCalibrator calibrator = new ModelCalibrator(modelManager);
+
+  // SVC audio thread -> STT worker. At least ~4 s of headroom before overruns.
+  private final AudioRingBuffer ring;
+  // Rare control work (init, model download) executed on the worker between blocks
+  private final Queue<Runnable> control = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+
+  // Worker-owned scratch segment, drained from the ring
+  private final float[] block;
+  // Worker-owned: sequence number of the utterance being received, and of the last one that cast
+  // (its remaining partial/final decodes are skipped or ignored)
+  private long utteranceSeq = 0;
+  private long castUtteranceId = -1;
+  // Decoder contexts; replaced only by the worker, once whisper is initialized
+  private volatile WhisperPool pool;
+  // Pool decodes awaiting the worker, and finished ones kept for reuse so a decode allocates nothing.
+  // In flight are at most the decoders plus the one the worker dispatches before draining results
+  private static final int DECODE_QUEUE = 64;
+  private final BlockingQueue<Decode> decoded = new ArrayBlockingQueue<>(DECODE_QUEUE);
+  private final BlockingQueue<Decode> freeDecodes = new ArrayBlockingQueue<>(DECODE_QUEUE);
+  // Rolling-window decoder for the block path (endpointing off)
+  private final StreamingDecoder streaming;
+  // Worker-owned: overlapping windows re-decode the same words; no re-cast until they slide out
+  private long streamCastSuppressUntil = 0;
+  // Tracks decode time against the batch of new audio per decode: the streaming stride, or with
+  // endpointing the partial interval. Its average decode time also trims the queue-age budget
+  private final BatchSizeController batchController;
+  // Partial interval for the endpointer, adapted like the stride; 0 while partials are off
+  private volatile int partialIntervalMs;
+
+  // Optional keyword spotter in front of (or instead of) whisper for final utterances
+  private final KeywordSpotter spotter;
+  private final Path kwsTemplatePath;
+  private volatile long kwsRejected = 0;
+
+  // Backpressure: segments older than this are dropped oldest-first instead of decoded late
+  private final long maxQueueAgeNanos;
+  private volatile long droppedSegments = 0;
+  private volatile long droppedSegmentSamples = 0;
+
+  // Set by the first activate(); the native library and model are not touched before that
+  private final AtomicBoolean activated = new AtomicBoolean();
+
+  // Set once the model is loaded and every decoder context has run its warm-up decode
+  private volatile boolean ready = false;
+  private volatile long warmUpMillis = -1;
+
+  // Config revision the decoder's prompt/stop words were built from; -1 forces a rebuild (e.g. after init)
+  private volatile int decodeOptionsRevision = -1;
 
   // Reused direct buffers
-  private final FloatBuffer audioBuf = ByteBuffer
-      .allocateDirect(4 * 5120) // 5120 float samples
-      .order(ByteOrder.nativeOrder())
-      .asFloatBuffer();
+  private final FloatBuffer audioBuf;
 
-  private final ByteBuffer textBuf = ByteBuffer.allocateDirect(2048).order(ByteOrder.nativeOrder());
+  // Worker-owned result of the push/poll path, reused for every poll
+  private final TranscriptBuffer pollResult = new TranscriptBuffer();
+
+
+  /** @param maxSegmentSamples largest block or utterance that will be pushed */
+  public SpeechToTextManager(int maxSegmentSamples) {
+    ring = new AudioRingBuffer(Math.max(16000 * 4, 2 * maxSegmentSamples));
+    block = new float[maxSegmentSamples];
+    audioBuf = ByteBuffer
+        .allocateDirect(4 * maxSegmentSamples)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    streaming = new StreamingDecoder(cfg.streamWindowMs, cfg.streamStrideMs, maxSegmentSamples);
+    if (cfg.endpointing) {
+      // Partials never get more frequent than configured, nor rarer than one per utterance
+      batchController = new BatchSizeController(cfg.partialIntervalMs, cfg.maxUtteranceMs, cfg.partialIntervalMs, cfg.targetLatencyMs);
+      partialIntervalMs = cfg.partialIntervalMs > 0 ? batchController.currentMs() : 0;
+    } else {
+      batchController = new BatchSizeController(cfg.audioBufferSize, cfg.streamWindowMs, cfg.streamStrideMs, cfg.targetLatencyMs);
+    }
+    streaming.setStrideMs(batchController.currentMs());
+    maxQueueAgeNanos = Math.max(100, cfg.targetLatencyMs) * 1_000_000L;
+    spotter = new KeywordSpotter(maxSegmentSamples);
+    kwsTemplatePath = Paths.get(MinecraftClient.getInstance().runDirectory.getPath(), "yellspells", "kws_templates.bin");
+    submit(() -> spotter.load(kwsTemplatePath));
 
-  private final AtomicInteger nonce = new AtomicInteger(1);
 
-  public SpeechToTextManager() {
+    worker = new Thread(this::runWorker, "YellSpells-STT");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Load the native library and the model (if downloaded) in the background. Called when voice chat
+   * connects, so games that never use voice chat never pay for either; later calls do nothing.
+   */
+  public void activate() {
     // Check if model exists but DO NOT auto-download
-    exec.submit(() -> {
-      String existingModelPath = modelManager.getModelPathIfExists();
-      if (existingModelPath != null) {
+    if (activated.compareAndSet(false, true)) submit(this::startModel);
+  }
+
+  /**
+   * Called on the SVC audio thread. Copies the block into the ring synchronously, so the caller
+   * may reuse {@code block} as soon as this returns. Never allocates; drops (and counts) on overrun.
+   */
+  public void pushBlock(float[] block, int samples, boolean speaking) {
+    write(block, samples, speaking ? TAG_SPEAKING_BLOCK : TAG_BLOCK);
+  }
+
+  /**
+   * Called on the SVC audio thread with a whole utterance (or, if {@code isFinal} is false, the
+   * utterance so far). Decoded once on the worker. Same copy/overrun semantics as {@link #pushBlock}.
+   */
+  public void submitUtterance(float[] samples, int len, boolean isFinal) {
+    write(samples, len, isFinal ? TAG_FINAL : TAG_PARTIAL);
+  }
+
+  private void write(float[] samples, int len, int tag) {
+    if (!ring.write(samples, 0, len, tag)) {
+      long overruns = ring.overruns();
+      if ((overruns & (overruns - 1)) == 0) { // log at powers of two only
+        YellSpellsMod.LOGGER.warn("STT: audio ring overrun (overruns: {}, dropped samples: {})", overruns, ring.droppedSamples());
+      }
+    }
+  }
+
+  public long getOverruns() { return ring.overruns(); }
+
+  /** Samples lost to overruns plus samples dropped as too late to be useful. */
+  public long getDroppedSamples() { return ring.droppedSamples() + droppedSegmentSamples; }
+
+  /** Segments dropped oldest-first because they had waited longer than targetLatencyMs. */
+  public long getDroppedSegments() { return droppedSegments; }
+
+  /** Segments waiting for the STT worker. */
+  public int getQueueDepth() { return ring.segmentsAvailable(); }
+
+  /** Audio waiting for the STT worker, in ms. */
+  public int getQueuedMillis() { return ring.available() / 16; }
+
+  /** Current batch chosen by the controller, in ms: the streaming stride, or the partial interval with endpointing. */
+  public int getBatchMillis() { return batchController.currentMs(); }
+
+  /** Interval the endpointer should emit partials at, in ms; 0 = finals only. Any thread. */
+  public int getPartialIntervalMs() { return partialIntervalMs; }
+
+  /** Decoder contexts sharing the loaded model (0 until whisper is initialized). */
+  public int getDecoderContexts() {
+    WhisperPool p = pool;
+    return p == null ? 0 : p.size();
+  }
+
+  /** True once the model is loaded and warmed up, so the next cast decodes at full speed. */
+  public boolean isReady() { return ready; }
+
+  /** Wall time of the last warm-up across all decoder contexts, in ms (-1 before the first). */
+  public long getWarmUpMillis() { return warmUpMillis; }
+
+  /** Final utterances the keyword spotter kept away from whisper. */
+  public long getKwsRejected() { return kwsRejected; }
+
+  /** Store the next complete utterance as a keyword-spotting template for {@code spellId}. */
+  public void recordKeywordTemplate(String spellId) {
+    spotter.armEnrollment(spellId);
+  }
+
+  /** Forget all keyword-spotting templates for {@code spellId}. */
+  public void clearKeywordTemplates(String spellId) {
+    submit(() -> {
+      spotter.clear(spellId);
+      spotter.save(kwsTemplatePath);
+    });
+  }
+
+  private void submit(Runnable task) {
+    control.add(task);
+    Thread w = worker;
+    if (w != null) LockSupport.unpark(w);
+  }
+
+  private void runWorker() {
+    while (!Thread.currentThread().isInterrupted()) {
+      Runnable task;
+      while ((task = control.poll()) != null) {
         try {
-          whisper.init(existingModelPath, 16000, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
-          if (whisper.available()) {
-            YellSpellsMod.LOGGER.info("Whisper STT initialized (using {} implementation) with model: {}", 
-              whisper.isUsingMock() ? "MOCK" : "NATIVE", existingModelPath);
-          } else {
-            YellSpellsMod.LOGGER.error("Failed to initialize Whisper STT - not available after init");
-          }
-        } catch (Exception e) {
-          YellSpellsMod.LOGGER.error("Failed to initialize Whisper STT", e);
+          task.run();
+        } catch (Throwable t) {
+          YellSpellsMod.LOGGER.error("STT: control task failed", t);
+        }
+      }
+      Decode done;
+      while ((done = decoded.poll()) != null) {
+        try {
+          done.deliver();
+        } catch (Throwable t) {
+          YellSpellsMod.LOGGER.error("STT: decode result failed", t);
+        } finally {
+          done.recycle();
+        }
+      }
+
+      if (!ring.awaitSegment(100, TimeUnit.MILLISECONDS)) continue;
+      dropStaleSegments();
+      if (ring.segmentsAvailable() == 0) continue;
+      int samples = ring.read(block, 0);
+      int tag = ring.lastTag();
+      try {
+        if (tag == TAG_BLOCK || tag == TAG_SPEAKING_BLOCK) {
+          processBlock(block, samples, tag == TAG_SPEAKING_BLOCK);
+        } else {
+          processUtterance(block, samples, tag == TAG_FINAL);
         }
+      } catch (Throwable t) {
+        YellSpellsMod.LOGGER.error("STT: segment processing failed", t);
+      }
+    }
+  }
+
+  private void dropStaleSegments() {
+    long now = System.nanoTime();
+    int dropped = 0;
+    // A segment also has to be decoded within the target, so the time decodes are taking comes off
+    // its waiting budget; at most half of it, so slow decoding alone does not drop everything
+    long decodeNanos = (long) (Math.max(0, batchController.averageDecodeMs()) * 1_000_000);
+    long maxAge = Math.max(maxQueueAgeNanos / 2, maxQueueAgeNanos - decodeNanos);
+    while (ring.peekAgeNanos(now) > maxAge) {
+      droppedSegmentSamples += ring.skip();
+      // A dropped final still ends its utterance
+      if (ring.lastTag() == TAG_FINAL) utteranceSeq++;
+      dropped++;
+    }
+    if (dropped > 0) {
+      droppedSegments += dropped;
+      YellSpellsMod.LOGGER.debug("STT: dropped {} stale segments (total {})", dropped, droppedSegments);
+    }
+  }
+
+  private void processBlock(float[] block, int samples, boolean speaking) {
+    if (!whisper.available()) {
+      // silent when not initialized
+      return;
+    }
+    updateDecodeOptions();
+    // Only log when speaking
+    if (speaking) {
+      YellSpellsMod.LOGGER.debug("STT: Processing {} samples (speaking: true)", samples);
+    }
+
+    if (whisper.decodeSupported()) {
+      if (streaming.append(block, samples)) dispatchWindow();
+      return;
+    }
+
+    // Native library without one-shot decoding: let it accumulate and poll
+    audioBuf.clear();
+    audioBuf.put(block, 0, samples);
+    audioBuf.flip();
+    whisper.push(audioBuf, samples);
+
+    // Poll once (or loop) for a partial
+    int wrote = whisper.poll(pollResult.clear(), pollResult.confStable);
+    
+    if (speaking) {
+      YellSpellsMod.LOGGER.debug("STT: Poll result - wrote: {}, confidence: {}", wrote, pollResult.confidence());
+    }
+    if (wrote > 0) handleText(pollResult.decode(wrote), pollResult.confidence());
+  }
+
+  private void processUtterance(float[] samples, int len, boolean isFinal) {
+    if (isFinal) {
+      String enrollSpell = spotter.takePendingEnrollment();
+      if (enrollSpell != null) {
+        utteranceSeq++;
+        spotter.enroll(enrollSpell, samples, len);
+        spotter.save(kwsTemplatePath);
+        YellSpellsMod.LOGGER.info("KWS: recorded template {} for spell '{}'", spotter.templateCount(enrollSpell), enrollSpell);
+        notifyPlayer("Recorded keyword template " + spotter.templateCount(enrollSpell) + " for '" + enrollSpell + "'");
+        return;
+      }
+    }
+    long id = utteranceSeq;
+    if (isFinal) utteranceSeq++;
+    if (id == castUtteranceId) {
+      // An earlier partial of this utterance already cast; skip the remaining decodes
+      return;
+    }
+
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    boolean kwsOnly = "only".equals(cfg.kwsMode);
+    if (!"off".equals(cfg.kwsMode) && spotter.hasTemplates()) {
+      if (!isFinal) {
+        // Spotting compares whole utterances; partials only make sense for whisper
+        if (kwsOnly) return;
       } else {
-        YellSpellsMod.LOGGER.info("No Whisper model found. Voice spells will not work until model is downloaded.");
+        String candidate = spotter.spot(samples, len, cfg.kwsThreshold);
+        YellSpellsMod.LOGGER.debug("KWS: candidate={} distance={}", candidate, spotter.lastDistance());
+        if (candidate == null) {
+          kwsRejected++;
+          return;
+        }
+        if (kwsOnly) {
+          // Low-power mode: the spotter's match is the result, scaled into [0.7, 1] by distance
+          sendCast(candidate, 1f - 0.3f * spotter.lastDistance() / cfg.kwsThreshold);
+          return;
+        }
+        // Gate mode: fall through so whisper confirms the candidate
       }
-    });
+    } else if (kwsOnly) {
+      return;
+    }
+
+    if (!whisper.available()) {
+      return;
+    }
+    updateDecodeOptions();
+    if (!whisper.decodeSupported()) {
+      // Old native library: stream the final utterance through push/poll instead
+      if (isFinal) processBlock(samples, len, false);
+      return;
+    }
+
+    WhisperPool.Slot slot = acquireSlot();
+    if (slot == null) return;
+    slot.audio.clear();
+    slot.audio.put(samples, 0, len);
+    int audioCtx = YellSpellsMod.getConfig().adaptiveAudioContext ? WhisperJNI.audioContextFor(len) : 0;
+    slot.dispatch(obtainDecode().utterance(id, len, audioCtx, isFinal));
   }
 
-  public void pushBlock(float[] block, int samples, boolean speaking) {
-    exec.submit(() -> {
-      if (!whisper.available()) {
-        // silent when not initialized
+  /** @param text null unless fuzzy matching or debug logging needs it */
+  private void onUtteranceDecoded(long id, String spell, String text, float confidence, long millis) {
+    // Same pacing as the streaming stride: partials come less often while decoding lags behind them
+    int contexts = pool == null ? 1 : pool.size();
+    int interval = batchController.update(millis / contexts, getQueuedMillis());
+    if (partialIntervalMs > 0) partialIntervalMs = interval;
+    // Partials and the final of one utterance may finish in any order; only the first cast counts
+    if (id == castUtteranceId || (spell == null && text == null)) return;
+    if (handleMatch(spell, text, confidence)) castUtteranceId = id;
+  }
+
+  private void dispatchWindow() {
+    WhisperPool.Slot slot = acquireSlot();
+    if (slot == null) return;
+    int n = streaming.snapshot(slot.audio);
+    slot.dispatch(obtainDecode().window(streaming.lastSeq(), n, streaming.audioContextFor(n)));
+  }
+
+  /** @param text null when the window holds no keyword and fuzzy matching is off */
+  private void onWindowDecoded(long seq, String text, float confidence, long nanos) {
+    String agreed = streaming.onDecoded(seq, text, confidence, nanos);
+    // Parallel contexts each take a window, so the stride only has to cover decode time / contexts
+    int contexts = pool == null ? 1 : pool.size();
+    streaming.setStrideMs(batchController.update(nanos / 1_000_000 / contexts, getQueuedMillis()));
+    long now = System.nanoTime();
+    if (agreed != null && now >= streamCastSuppressUntil && handleText(agreed, streaming.confidence())) {
+      streamCastSuppressUntil = now + streaming.windowSamples() / 16 * 1_000_000L;
+    }
+  }
+
+  /** Idle decoder slot, waiting at most targetLatencyMs for one; null if none frees up or there is no pool. */
+  private WhisperPool.Slot acquireSlot() {
+    if (pool == null) return null;
+    try {
+      return pool.acquire(maxQueueAgeNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /** A recycled decode for the worker to dispatch; new ones only until enough are in circulation. */
+  private Decode obtainDecode() {
+    Decode decode = freeDecodes.poll();
+    return decode != null ? decode : new Decode();
+  }
+
+  /**
+   * One pool decode, from request to result. The worker fills in the request and dispatches it; the
+   * slot's thread decodes, runs the keyword scan over the slot's buffer before the slot is released,
+   * and queues the result for the worker, which delivers it and recycles the object. Only the spell
+   * id and confidence cross threads; the transcript is copied into a String only when fuzzy matching,
+   * window agreement on a keyword, or debug logging needs it.
+   */
+  private final class Decode implements WhisperPool.Job {
+    // Request, written by the worker
+    private boolean window;
+    private long id; // utterance id, or window sequence number
+    private int samples;
+    private int audioCtx;
+    private boolean isFinal;
+    // Result, written on the slot's thread
+    private int wrote;
+    private String spell;
+    private String text;
+    private float confidence;
+    private long nanos;
+    private float[] replay; // audio of a final the native library could not decode
+
+    Decode utterance(long id, int samples, int audioCtx, boolean isFinal) {
+      return request(false, id, samples, audioCtx, isFinal);
+    }
+
+    Decode window(long seq, int samples, int audioCtx) {
+      return request(true, seq, samples, audioCtx, false);
+    }
+
+    private Decode request(boolean window, long id, int samples, int audioCtx, boolean isFinal) {
+      this.window = window;
+      this.id = id;
+      this.samples = samples;
+      this.audioCtx = audioCtx;
+      this.isFinal = isFinal;
+      return this;
+    }
+
+    @Override
+    public void run(WhisperPool.Slot slot) {
+      long start = System.nanoTime();
+      wrote = slot.decode(samples, audioCtx);
+      nanos = System.nanoTime() - start;
+      confidence = slot.result.confidence();
+      if (wrote < 0) {
+        // Native library turned out to lack nativeDecode; the worker replays a final through push/poll
+        if (!window && isFinal) {
+          replay = new float[samples];
+          slot.audio.get(0, replay);
+        }
+      } else {
+        CharBuffer chars = slot.text(wrote);
+        spell = SpellDetector.automaton().match(chars);
+        boolean fuzzy = YellSpellsMod.getConfig().fuzzyMatching;
+        // Windows need the words to agree on with the next window, but only if they can cast
+        boolean needText = window ? spell != null || fuzzy : spell == null && fuzzy;
+        if (needText || YellSpellsMod.LOGGER.isDebugEnabled()) text = chars.toString();
+      }
+      if (decoded.offer(this)) {
+        LockSupport.unpark(worker);
+      } else {
+        submit(() -> {
+          deliver();
+          recycle();
+        });
+      }
+    }
+
+    /** Worker thread. */
+    void deliver() {
+      if (wrote < 0) {
+        // No nativeDecode: later blocks go through push/poll
+        if (replay != null) processBlock(replay, samples, false);
         return;
       }
-      // Only log when speaking
-      if (speaking) {
-        YellSpellsMod.LOGGER.info("STT: Processing {} samples (speaking: true)", samples);
+      if (window) {
+        onWindowDecoded(id, text, confidence, nanos);
+        return;
       }
-      
-      audioBuf.clear();
-      audioBuf.put(block, 0, samples);
-      audioBuf.flip();
-      whisper.push(audioBuf, samples);
-
-      // Poll once (or loop) for a partial
-      textBuf.clear();
-      float[] confStable = new float[2]; // [0]=confidence, [1]=isStable(0/1)
-      int wrote = whisper.poll(textBuf, confStable);
-      
-      if (speaking) {
-        YellSpellsMod.LOGGER.info("STT: Poll result - wrote: {}, confidence: {}", wrote, confStable[0]);
+      long millis = nanos / 1_000_000;
+      if (YellSpellsMod.LOGGER.isDebugEnabled()) {
+        YellSpellsMod.LOGGER.debug("STT: Decoded {} utterance of {} ms (audio_ctx {}) in {} ms", isFinal ? "final" : "partial",
+            samples / 16, audioCtx, millis);
       }
-      
-      if (wrote > 0 && confStable[0] >= 0.65f) {
-        textBuf.limit(wrote);
-        byte[] utf8 = new byte[wrote];
-        textBuf.get(utf8);
-        String partial = new String(utf8);
-
-        YellSpellsMod.LOGGER.info("STT: Recognized text: '{}' (confidence: {})", partial, confStable[0]);
-        
-        String spell = SpellDetector.detectKeyword(partial); // your keyword matching
-        if (spell != null) {
-          YellSpellsMod.LOGGER.info("STT: SPELL DETECTED: '{}' from text: '{}'", spell, partial);
-          long tick = MinecraftClient.getInstance().world == null ? 0 : MinecraftClient.getInstance().world.getTime();
-          long now = System.currentTimeMillis();
-
-          // Use player's looking direction for ray hint
-          double rayX = 0.0, rayY = 0.0, rayZ = 1.0; // Default forward direction
-          if (MinecraftClient.getInstance().player != null) {
-            var player = MinecraftClient.getInstance().player;
-            rayX = -Math.sin(Math.toRadians(player.getYaw())) * Math.cos(Math.toRadians(player.getPitch()));
-            rayY = -Math.sin(Math.toRadians(player.getPitch()));
-            rayZ = Math.cos(Math.toRadians(player.getYaw())) * Math.cos(Math.toRadians(player.getPitch()));
-          }
-          
-          CastIntentPacket pkt = new CastIntentPacket(spell, confStable[0], tick, now, rayX, rayY, rayZ, nonce.getAndIncrement(), new byte[32]);
-          byte[] key = YellSpellsNetworking.getClientSessionKey();
-          if (key != null) {
-            pkt.hmac = pkt.generateHmac(key);
-            YellSpellsMod.LOGGER.info("STT: Sending cast intent for spell '{}' with confidence {}", spell, confStable[0]);
-            sendIntent(pkt);
-          } else {
-            YellSpellsMod.LOGGER.warn("STT: Cannot send cast intent - no session key available!");
-          }
-        }
+      onUtteranceDecoded(id, spell, text, confidence, millis);
+    }
+
+    void recycle() {
+      spell = null;
+      text = null;
+      replay = null;
+      freeDecodes.offer(this); // a full free list lets the extra one go
+    }
+  }
+
+  /**
+   * Calibrate first if the CPU or the set of local models changed since the last calibration, then
+   * load the configured model if it is present. Worker thread only.
+   */
+  private void startModel() {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    if (cfg.autoCalibrate && !whisper.isUsingMock() && !modelManager.localModels().isEmpty()
+        && !calibrator.fingerprint().equals(cfg.calibratedFor)) {
+      calibrate();
+    }
+    String existingModelPath = modelManager.getModelPathIfExists();
+    if (existingModelPath != null) {
+      try {
+        loadModel(existingModelPath);
+      } catch (Exception e) {
+        YellSpellsMod.LOGGER.error("Failed to initialize Whisper STT", e);
       }
+    } else {
+      YellSpellsMod.LOGGER.info("No Whisper model found. Voice spells will not work until model is downloaded.");
+    }
+  }
+
+  /**
+   * Benchmark the local models again and switch to the winner. Recognition is off while it runs
+   * (a few seconds per model).
+   */
+  public void recalibrate() {
+    activated.set(true);
+    submit(() -> {
+      ready = false;
+      if (pool != null) pool.close();
+      pool = null;
+      whisper.close(); // nothing else decoding while the benchmark measures
+      calibrate();
+      startModel();
     });
   }
 
+  /** Worker thread only. */
+  private void calibrate() {
+    notifyPlayer("Measuring voice recognition speed...");
+    ModelCalibrator.Run chosen = calibrator.calibrate();
+    if (chosen != null) {
+      notifyPlayer("Using model " + chosen.model() + " with " + chosen.threads() + " threads ("
+          + chosen.decodeMillis() + " ms per 2 s shout)");
+    }
+  }
+
+  /** Load {@code modelPath}, create its decoder contexts and warm them up. Worker thread only. */
+  private void loadModel(String modelPath) {
+    ready = false;
+    long start = System.nanoTime();
+    whisper.init(modelPath, 16000, totalThreads());
+    long loadMillis = (System.nanoTime() - start) / 1_000_000;
+    decodeOptionsRevision = -1;
+    startPool();
+    if (!whisper.available()) {
+      YellSpellsMod.LOGGER.error("Failed to initialize Whisper STT - not available after init");
+      return;
+    }
+    YellSpellsMod.LOGGER.info("Whisper STT initialized (using {} implementation) with model {} in {} ms",
+        whisper.isUsingMock() ? "MOCK" : "NATIVE", modelPath, loadMillis);
+    warmUp();
+  }
+
+  /** (Re)create the decoder contexts for the current model. Worker thread only. */
+  private void startPool() {
+    ready = false;
+    if (pool != null) pool.close();
+    pool = null;
+    if (!whisper.available()) return;
+    int cores = Runtime.getRuntime().availableProcessors();
+    int configured = YellSpellsMod.getConfig().decoderContexts;
+    int size = configured > 0 ? configured : Math.max(1, Math.min(4, cores / 4));
+    int threads = Math.max(1, totalThreads() / size);
+    pool = new WhisperPool(whisper, size, threads, Math.max(block.length, streaming.windowSamples()));
+  }
+
+  // Whisper threads across all decoder contexts: the calibrated/configured count, else half the cores
+  private static int totalThreads() {
+    int configured = YellSpellsMod.getConfig().sttThreads;
+    return configured > 0 ? configured : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  }
+
+  /**
+   * Decode a couple of seconds of silence on every context before reporting ready, so the first
+   * cast does not pay for first-run setup (model pages, compute buffers, decoder threads).
+   * Segments arriving meanwhile wait in the ring. Worker thread only.
+   */
+  private void warmUp() {
+    WhisperPool p = pool;
+    if (p == null) return;
+    updateDecodeOptions(); // the keyword prompt is decoded every time, so warm up with it
+    long[] perContext = new long[0];
+    long start = System.nanoTime();
+    if (whisper.decodeSupported()) {
+      int samples = Math.min(block.length, 2 * 16000);
+      int audioCtx = YellSpellsMod.getConfig().adaptiveAudioContext ? WhisperJNI.audioContextFor(samples) : 0;
+      try {
+        perContext = p.warmUp(samples, audioCtx);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    warmUpMillis = (System.nanoTime() - start) / 1_000_000;
+    ready = true;
+    YellSpellsMod.LOGGER.info("STT: ready; warm-up took {} ms (per context: {} ms)", warmUpMillis, Arrays.toString(perContext));
+    notifyPlayer("Voice spells ready");
+  }
+
+  /**
+   * Bias the decoder toward the configured spells: their keywords become the initial prompt and
+   * stop words, and output is capped at roughly maxPartialLength characters. Also applies the
+   * encoder context setting to the streaming decoder. Rebuilt after every config reload.
+   * Worker thread only.
+   */
+  private void updateDecodeOptions() {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    int revision = cfg.getRevision();
+    if (revision == decodeOptionsRevision) return;
+    decodeOptionsRevision = revision;
+    streaming.setAdaptiveAudioContext(cfg.adaptiveAudioContext);
+
+    int keywords = whisper.configureForSpells(cfg);
+    if (keywords >= 0) {
+      YellSpellsMod.LOGGER.info("STT: decoder biased to {} keywords, max {} characters, early stop {}",
+          keywords, cfg.maxPartialLength, cfg.earlyStopOnKeyword);
+    }
+  }
+
+  /**
+   * @param partial scanned in place; may be a reused buffer, so it is only turned into a String for
+   *                logging or fuzzy matching
+   * @return true if a cast intent was sent
+   */
+  private boolean handleText(CharSequence partial, float confidence) {
+    if (confidence < MIN_CONFIDENCE) return false;
+    return handleMatch(SpellDetector.automaton().match(partial), partial, confidence);
+  }
+
+  /**
+   * @param spell exact keyword match already found in the transcript, or null
+   * @param text the transcript; may be null when neither fuzzy matching nor debug logging needs it
+   * @return true if a cast intent was sent
+   */
+  private boolean handleMatch(String spell, CharSequence text, float confidence) {
+    if (confidence < MIN_CONFIDENCE) return false;
+    if (text != null && YellSpellsMod.LOGGER.isDebugEnabled()) {
+      YellSpellsMod.LOGGER.debug("STT: Recognized text: '{}' (confidence: {})", text.toString(), confidence);
+    }
+    if (spell == null && text != null && YellSpellsMod.getConfig().fuzzyMatching) {
+      spell = SpellDetector.fuzzyIndex().match(text);
+    }
+    if (spell == null) return false;
+    if (text != null) {
+      YellSpellsMod.LOGGER.info("STT: SPELL DETECTED: '{}' from text: '{}'", spell, text);
+    } else {
+      YellSpellsMod.LOGGER.info("STT: SPELL DETECTED: '{}'", spell);
+    }
+    return sendCast(spell, confidence);
+  }
+
+  /** @return true if a cast intent was sent */
+  private boolean sendCast(String spell, float confidence) {
+    long tick = MinecraftClient.getInstance().world == null ? 0 : MinecraftClient.getInstance().world.getTime();
+    long now = System.currentTimeMillis();
+
+    // Use player's looking direction for ray hint
+    double rayX = 0.0, rayY = 0.0, rayZ = 1.0; // Default forward direction
+    if (MinecraftClient.getInstance().player != null) {
+      var player = MinecraftClient.getInstance().player;
+      rayX = -Math.sin(Math.toRadians(player.getYaw())) * Math.cos(Math.toRadians(player.getPitch()));
+      rayY = -Math.sin(Math.toRadians(player.getPitch()));
+      rayZ = Math.cos(Math.toRadians(player.getYaw())) * Math.cos(Math.toRadians(player.getPitch()));
+    }
+    
+    CastIntentPacket pkt = YellSpellsNetworking.createCastIntent(spell, confidence, tick, now, rayX, rayY, rayZ);
+    if (pkt != null) {
+      YellSpellsMod.LOGGER.info("STT: Sending cast intent for spell '{}' with confidence {}", spell, confidence);
+      sendIntent(pkt);
+      return true;
+    } else {
+      YellSpellsMod.LOGGER.warn("STT: Cannot send cast intent for '{}' - no session key yet, or the server has no such spell", spell);
+    }
+    return false;
+  }
+
   /**
    * Prompt user to download model (only call when user explicitly wants to use voice spells)
    */
   public void promptModelDownload() {
     if (!modelManager.isModelAvailable()) {
-      exec.submit(() -> {
+      activated.set(true); // the model is started once downloaded
+      submit(() -> {
         modelManager.getModelPath().thenAccept(modelPath -> {
           if (modelPath != null) {
-            try {
-              whisper.init(modelPath, 16000, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
-              YellSpellsMod.LOGGER.info("Whisper STT initialized with downloaded model: {}", modelPath);
-            } catch (Exception e) {
-              YellSpellsMod.LOGGER.error("Failed to initialize Whisper STT after download", e);
-            }
+            submit(this::startModel); // a new model file also triggers calibration
           }
         });
       });
     }
   }
 
+  private void notifyPlayer(String message) {
+    MinecraftClient.getInstance().execute(() -> {
+      if (MinecraftClient.getInstance().player != null) {
+        MinecraftClient.getInstance().player.sendMessage(
+            Text.literal("[YellSpells] ").formatted(Formatting.GREEN).append(Text.literal(message)), false);
+      }
+    });
+  }
+
   private void sendIntent(CastIntentPacket pkt) {
     MinecraftClient.getInstance().execute(() -> com.yellspells.client.net.ClientSender.sendIntent(pkt));
   }
@@ -0,0 +1,180 @@
+package com.yellspells.client.stt;
+
+import com.yellspells.stt.WhisperJNI;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Rolling-window streaming scheduler for the block path.
+ * Keeps the last {@code windowMs} of audio in one reusable direct buffer and asks for the whole
+ * window to be re-decoded every {@code strideMs} of new audio, so consecutive windows overlap by
+ * window - stride. Words are only reported once two consecutive hypotheses agree on them
+ * (local agreement), which filters the flicker at the still-growing end of the window.
+ * Stride sets time-to-first-partial; window / stride sets the CPU multiplier.
+ * Decoding itself happens elsewhere (see {@link WhisperPool}), possibly several windows at once;
+ * results are applied in window order and a result older than one already applied is dropped.
+ * Worker thread only.
+ */
+@Environment(EnvType.CLIENT)
+final class StreamingDecoder {
+
+  private static final String[] NO_WORDS = new String[0];
+  // The window slides by a stride between decodes, so up to this many leading words may drop out
+  private static final int MAX_LEADING_SHIFT = 3;
+
+  private final int windowSamples;
+  private int strideSamples;
+  private final FloatBuffer window;
+  private boolean adaptiveAudioContext = true;
+
+  private int size = 0;
+  private int sinceDecode = 0;
+  private long nextSeq = 0;
+  private long appliedSeq = -1;
+  private String[] previous = NO_WORDS;
+  private float confidence = 0f;
+
+  // Telemetry
+  private long decodes = 0;
+  private long decodeNanos = 0;
+  private long lastDecodeNanos = 0;
+  private long staleResults = 0;
+
+  StreamingDecoder(int windowMs, int strideMs, int maxBlockSamples) {
+    this.windowSamples = Math.max(16000, windowMs * 16);
+    this.strideSamples = Math.max(320, Math.min(windowSamples, strideMs * 16));
+    this.window = ByteBuffer.allocateDirect(4 * (windowSamples + maxBlockSamples))
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+
+  int windowSamples() { return windowSamples; }
+
+  int strideSamples() { return strideSamples; }
+
+  /** Change how much new audio accumulates between decodes (see {@link BatchSizeController}). */
+  void setStrideMs(int strideMs) {
+    this.strideSamples = Math.max(320, Math.min(windowSamples, strideMs * 16));
+  }
+
+  /** Limit the encoder to the window length instead of whisper's full 30 s context. */
+  void setAdaptiveAudioContext(boolean adaptive) {
+    this.adaptiveAudioContext = adaptive;
+  }
+
+  /** Encoder context to decode a window of {@code samples} with (0 = whisper's default). */
+  int audioContextFor(int samples) {
+    return adaptiveAudioContext ? WhisperJNI.audioContextFor(samples) : 0;
+  }
+
+  /**
+   * Append audio to the window.
+   * @return true once a stride of new audio has accumulated; then {@link #snapshot} the window
+   */
+  boolean append(float[] samples, int len) {
+    if (size + len > windowSamples) {
+      // Slide: drop the oldest audio so the window plus this block fits
+      int drop = Math.min(size, size + len - windowSamples);
+      window.position(drop).limit(size);
+      window.compact();
+      size -= drop;
+    }
+    window.clear().position(size);
+    window.put(samples, 0, len);
+    size += len;
+    window.clear();
+
+    sinceDecode += len;
+    return sinceDecode >= strideSamples;
+  }
+
+  /**
+   * Copy the current window to the start of {@code dst} and begin a new stride.
+   * The sequence number for {@link #onDecoded} is {@link #lastSeq()}.
+   * @return samples copied
+   */
+  int snapshot(FloatBuffer dst) {
+    sinceDecode = 0;
+    nextSeq++;
+    window.clear().limit(size);
+    dst.clear();
+    dst.put(window);
+    window.clear();
+    return size;
+  }
+
+  long lastSeq() { return nextSeq - 1; }
+
+  /**
+   * Apply the transcript of window {@code seq}.
+   * @param text the window's transcript, or null if it has no keyword and nothing else needs its
+   *             words: then no agreement with it could cast, so it counts as an empty window
+   * @return the words this and the previous applied window agree on, or null if nothing (new) was agreed
+   */
+  String onDecoded(long seq, String text, float confidence, long nanos) {
+    lastDecodeNanos = nanos;
+    decodeNanos += nanos;
+    decodes++;
+    if (seq <= appliedSeq) {
+      // A newer window finished first; this one has nothing to add
+      staleResults++;
+      return null;
+    }
+    appliedSeq = seq;
+    this.confidence = confidence;
+
+    text = text == null ? "" : text.trim();
+    if (text.isEmpty()) {
+      previous = NO_WORDS;
+      return null;
+    }
+    String[] words = text.split("\\s+");
+
+    String agreed = agreedPrefix(previous, words);
+    previous = words;
+    return agreed;
+  }
+
+  float confidence() { return confidence; }
+
+  void reset() {
+    size = 0;
+    sinceDecode = 0;
+    appliedSeq = nextSeq - 1; // results still in flight belong to the old audio
+    previous = NO_WORDS;
+  }
+
+  long decodes() { return decodes; }
+
+  long staleResults() { return staleResults; }
+
+  long averageDecodeMillis() { return decodes == 0 ? 0 : decodeNanos / decodes / 1_000_000; }
+
+  long lastDecodeMillis() { return lastDecodeNanos / 1_000_000; }
+
+  /**
+   * Longest run of words that starts {@code current} and also appears in {@code previous},
+   * allowing {@code previous} to have lost up to {@link #MAX_LEADING_SHIFT} words off its front.
+   */
+  private static String agreedPrefix(String[] previous, String[] current) {
+    int best = 0;
+    for (int shift = 0; shift <= MAX_LEADING_SHIFT && shift < previous.length; shift++) {
+      int n = 0;
+      while (n < current.length && shift + n < previous.length
+          && normalize(current[n]).equals(normalize(previous[shift + n]))) {
+        n++;
+      }
+      best = Math.max(best, n);
+    }
+    if (best == 0) return null;
+    return String.join(" ", java.util.Arrays.asList(current).subList(0, best));
+  }
+
+  private static String normalize(String word) {
+    return word.replaceAll("[^\\p{L}\\p{N}]", "").toLowerCase();
+  }
+}
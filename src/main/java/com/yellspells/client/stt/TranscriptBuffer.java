@@ -0,0 +1,60 @@
+package com.yellspells.client.stt;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable landing place for one native recognition result: the UTF-8 text whisper writes, its
+ * confidence / stability flags, and the text decoded to chars. Nothing is allocated per result; the
+ * decoded {@link CharBuffer} is a {@link CharSequence} the keyword matchers scan directly and is
+ * only valid until the next {@link #clear}. Not thread-safe.
+ */
+@Environment(EnvType.CLIENT)
+final class TranscriptBuffer {
+
+  static final int CAPACITY = 2048;
+
+  final ByteBuffer utf8 = ByteBuffer.allocateDirect(CAPACITY).order(ByteOrder.nativeOrder());
+  final float[] confStable = new float[2]; // [0]=confidence, [1]=isStable(0/1)
+  // UTF-8 never decodes to more chars than it has bytes
+  private final CharBuffer chars = CharBuffer.allocate(CAPACITY);
+  // Text cut off mid-character by the native length cap decodes to U+FFFD instead of failing
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /** Empty the holder before handing {@link #utf8} and {@link #confStable} to the native side. */
+  ByteBuffer clear() {
+    utf8.clear();
+    chars.clear().limit(0);
+    confStable[0] = 0;
+    confStable[1] = 0;
+    return utf8;
+  }
+
+  /**
+   * Decode the first {@code wrote} bytes of {@link #utf8}.
+   * @return the text, valid until the next {@link #clear} or {@link #decode}
+   */
+  CharBuffer decode(int wrote) {
+    chars.clear();
+    if (wrote > 0) {
+      utf8.limit(Math.min(wrote, CAPACITY)).position(0);
+      decoder.reset();
+      decoder.decode(utf8, chars, true);
+      decoder.flush(chars);
+    }
+    return chars.flip();
+  }
+
+  float confidence() { return confStable[0]; }
+
+  boolean stable() { return confStable[1] != 0; }
+}
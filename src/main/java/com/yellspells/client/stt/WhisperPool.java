@@ -0,0 +1,195 @@
+package com.yellspells.client.stt;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.stt.WhisperJNI;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of decoder slots on one loaded model, each with its own whisper state, buffers and
+ * daemon thread, so queued utterances and overlapping stream windows decode in parallel.
+ * The STT worker leases an idle slot with {@link #acquire}, fills its audio buffer and hands it a
+ * job with {@link Slot#dispatch}; the slot returns itself to the idle queue when the job is done.
+ * Closing the pool frees idle slots immediately and busy ones as soon as their decode returns,
+ * so no state is freed mid-inference. If the native library cannot create extra states the pool
+ * has a single slot decoding on the context's own state.
+ */
+@Environment(EnvType.CLIENT)
+final class WhisperPool {
+
+  /** Work run on a slot's thread; must not keep references to the slot's buffers afterwards. */
+  interface Job {
+    void run(Slot slot);
+  }
+
+  private final WhisperJNI whisper;
+  private final Slot[] slots;
+  private final BlockingQueue<Slot> idle;
+  private volatile boolean closed = false;
+
+  WhisperPool(WhisperJNI whisper, int size, int threadsPerSlot, int maxSamples) {
+    this.whisper = whisper;
+    Slot[] created = new Slot[Math.max(1, size)];
+    int n = 0;
+    for (int i = 0; i < created.length; i++) {
+      WhisperJNI.State state = whisper.createState(threadsPerSlot);
+      if (state == null) break;
+      created[n] = new Slot(n + 1, state, maxSamples);
+      n++;
+    }
+    if (n == 0) {
+      // No extra states: one slot on the context's built-in state
+      created[0] = new Slot(1, null, maxSamples);
+      n = 1;
+    }
+    this.slots = Arrays.copyOf(created, n);
+    this.idle = new ArrayBlockingQueue<>(n);
+    for (Slot slot : slots) {
+      idle.add(slot);
+      slot.thread.start();
+    }
+    YellSpellsMod.LOGGER.info("STT: {} decoder context(s), {} thread(s) each", n, threadsPerSlot);
+  }
+
+  int size() { return slots.length; }
+
+  int idleSlots() { return idle.size(); }
+
+  /**
+   * Lease an idle slot, waiting up to {@code timeout} for one to free up.
+   * @return the slot, or null on timeout or once the pool is closed
+   */
+  Slot acquire(long timeout, TimeUnit unit) throws InterruptedException {
+    if (closed) return null;
+    Slot slot = idle.poll(timeout, unit);
+    if (slot != null && closed) {
+      slot.free();
+      return null;
+    }
+    return slot;
+  }
+
+  /**
+   * Decode {@code samples} of silence once on every slot, in parallel, so the first real utterance
+   * does not pay first-run costs (model pages faulted in, compute buffers and decoder threads set up).
+   * Call while the pool is idle.
+   * @return each slot's decode time in ms, -1 where the slot could not decode
+   */
+  long[] warmUp(int samples, int audioCtx) throws InterruptedException {
+    long[] millis = new long[slots.length];
+    Arrays.fill(millis, -1);
+    CountDownLatch done = new CountDownLatch(slots.length);
+    for (int i = 0; i < slots.length; i++) {
+      Slot slot = acquire(1, TimeUnit.MINUTES);
+      if (slot == null) {
+        for (int j = i; j < slots.length; j++) done.countDown();
+        break;
+      }
+      int index = i;
+      slot.audio.clear();
+      for (int k = 0; k < samples; k++) slot.audio.put(k, 0f);
+      slot.dispatch(s -> {
+        try {
+          long start = System.nanoTime();
+          if (s.decode(samples, audioCtx) >= 0) millis[index] = (System.nanoTime() - start) / 1_000_000;
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+    done.await(1, TimeUnit.MINUTES);
+    return millis;
+  }
+
+  /** Stop accepting work and free every state once it is idle. */
+  void close() {
+    closed = true;
+    for (Slot slot : slots) slot.thread.interrupt();
+    Slot slot;
+    while ((slot = idle.poll()) != null) slot.free();
+  }
+
+  private void release(Slot slot) {
+    if (closed) {
+      slot.free();
+    } else {
+      idle.add(slot);
+    }
+  }
+
+  final class Slot {
+    final FloatBuffer audio;
+    final TranscriptBuffer result = new TranscriptBuffer();
+    private final WhisperJNI.State state; // null: the context's own state
+    private final Thread thread;
+    private final BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(1);
+    private boolean freed = false;
+
+    private Slot(int index, WhisperJNI.State state, int maxSamples) {
+      this.state = state;
+      this.audio = ByteBuffer.allocateDirect(4 * maxSamples).order(ByteOrder.nativeOrder()).asFloatBuffer();
+      this.thread = new Thread(this::run, "YellSpells-STT-decode-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    /** Run {@code job} on this slot's thread; the slot is released when it returns. */
+    void dispatch(Job job) {
+      if (closed) {
+        free();
+        return;
+      }
+      jobs.add(job);
+    }
+
+    /** Decode audio[0 .. samples) into {@link #text}; same contract as {@link WhisperJNI#decode}. */
+    int decode(int samples, int audioCtx) {
+      ByteBuffer text = result.clear();
+      audio.clear();
+      return state != null
+          ? state.decode(audio, samples, audioCtx, text, result.confStable)
+          : whisper.decode(audio, samples, audioCtx, text, result.confStable);
+    }
+
+    /**
+     * Text written by the last {@link #decode} that returned {@code wrote} bytes. A view of the
+     * slot's buffer, valid only until the job returns; copy it before handing it to another thread.
+     */
+    CharBuffer text(int wrote) {
+      return result.decode(Math.max(0, wrote));
+    }
+
+    private void run() {
+      while (!closed) {
+        Job job;
+        try {
+          job = jobs.take();
+        } catch (InterruptedException e) {
+          continue; // re-check closed
+        }
+        try {
+          job.run(this);
+        } catch (Throwable t) {
+          YellSpellsMod.LOGGER.error("STT: decode job failed", t);
+        } finally {
+          release(this);
+        }
+      }
+    }
+
+    private synchronized void free() {
+      if (freed) return;
+      freed = true;
+      if (state != null) state.close();
+    }
+  }
+}
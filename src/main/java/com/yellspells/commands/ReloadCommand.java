@@ -2,6 +2,7 @@ package com.yellspells.commands;
 
 import com.mojang.brigadier.CommandDispatcher;
 import com.yellspells.YellSpellsMod;
+import com.yellspells.network.YellSpellsNetworking;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -14,6 +15,8 @@ public final class ReloadCommand {
         .executes(ctx -> {
           try {
             YellSpellsMod.getConfig().load();
+            // New revision, maybe new spells: clients must name spells by the new registry
+            YellSpellsNetworking.sendSpellRegistry(ctx.getSource().getServer());
             ctx.getSource().sendFeedback(() -> net.minecraft.text.Text.literal("Reloaded yellspells.json"), true);
             return 1;
           } catch (Exception e) {
@@ -18,15 +18,46 @@ public class YellSpellsConfig {
     private static final Path CONFIG_PATH = FabricLoader.getInstance().getConfigDir().resolve("yellspells.json");
     
     // Audio processing settings
-    public int audioBufferSize = 400; // ms
+    public int audioBufferSize = 400; // ms; smallest streaming batch the STT controller narrows to
     public float vadThreshold = 0.3f;
     public int sampleRate = 16000;
+    public String vadMode = "energy"; // energy | spectral (also checks voice-band ratio, flatness, zero crossings)
+    public boolean vadGating = true; // only run STT while the VAD reports speech
+    public int vadPreRollMs = 300; // audio kept from before speech onset
+    public int vadHangoverMs = 400; // audio still forwarded after speech ends
+    public boolean endpointing = true; // submit whole utterances instead of fixed 320 ms blocks
+    public int minSpeechMs = 200; // shorter voiced bursts are dropped
+    public int minSilenceMs = 400; // silence that ends an utterance
+    public int maxUtteranceMs = 3000; // utterances are force-ended at this length
+    public int partialIntervalMs = 0; // >0: also decode partials mid-utterance, at least this far apart (widened at runtime)
+    public int streamWindowMs = 2500; // endpointing off: audio context re-decoded each stride
+    public int streamStrideMs = 500; // endpointing off: new audio between decodes (initial; adapted at runtime)
+    public int targetLatencyMs = 1500; // queued audio that could no longer be decoded within this is dropped rather than decoded late
+    public String kwsMode = "off"; // off | gate (spotter pre-filters whisper) | only (spotter replaces whisper)
+    public float kwsThreshold = 1.2f; // max mean DTW distance to an enrolled template
     
     // STT settings
-    public String modelName = "tiny.en";
+    public String modelName = "tiny.en"; // models/ggml-<modelName>.bin; chosen by calibration when autoCalibrate is on
+    public int sttThreads = 0; // whisper threads, split across decoder contexts; 0 = auto (cores / 2)
+    public boolean autoCalibrate = true; // benchmark the local models on first run / new hardware and pick modelName + sttThreads
+    public String calibratedFor = ""; // set by calibration: the CPU + model files its choice was measured on
+    public Map<String, String> modelSha256 = new HashMap<>(); // model name -> expected SHA-256 of its download; unlisted = the hash published by the host
+    public int downloadConnections = 4; // parallel HTTP range requests for the model download
     public float confidenceThreshold = 0.7f;
     public int stabilityThreshold = 2; // consecutive partials
     public int maxPartialLength = 50; // characters
+    public int decoderContexts = 0; // parallel decoders sharing the model; 0 = auto (cores / 4, 1..4)
+    public boolean adaptiveAudioContext = true; // size the encoder context to the audio instead of 30 s
+    public boolean keywordPrompt = true; // prompt the decoder with the spell keywords
+    public boolean earlyStopOnKeyword = true; // stop decoding as soon as a spell keyword was produced
+    public boolean fuzzyMatching = false; // also accept misheard keywords ("fire ball", "fireboll")
+    public int fuzzyMaxDistance = 2; // max spelling edits for a fuzzy keyword match (fewer for short keywords)
+    
+    // Server-side recognition (SVC microphone audio transcribed on the server)
+    public boolean serverRecognition = false;
+    public String serverSttBackend = "whisper"; // whisper | mock (hears the spell keywords in turn; for testing)
+    public String serverModelPath = ""; // empty = yellspells/models/ggml-<modelName>.bin in the server directory
+    public int serverDecoderContexts = 0; // utterances decoded in parallel; 0 = auto (cores / 4, 1..8)
     
     // Spell settings
     public Map<String, SpellConfig> spells = new HashMap<>();
@@ -34,15 +65,26 @@ public class YellSpellsConfig {
     public boolean requirePermission = true;
     
     // Anti-cheat settings
-    public int maxTimeSkew = 5000; // ms
-    public int nonceWindow = 1000; // ms
+    public int maxTimeSkew = 5000; // ms an intent may lag or lead the session's first one; 0 = unchecked
+    public int nonceWindow = 1024; // intents per player tracked by the replay window (rounded up to 64)
     public boolean enableRaycastValidation = true;
+    public int maxIntentsPerSecond = 5; // sustained cast intents per player; excess is dropped before verification, 0 = unlimited
+    public int intentBurst = 10; // intents a player may send back to back before maxIntentsPerSecond applies
+    
+    // Bumped after every load so derived structures (e.g. the keyword automaton) know to rebuild
+    private volatile int revision = 0;
+    // Spell id -> ordinal; only ever grows, so an ordinal keeps meaning the same spell across reloads
+    private final Map<String, Integer> spellOrdinals = new HashMap<>();
+    // Indexed by ordinal; null where a spell was removed by a reload
+    private volatile String[] spellIdsByOrdinal = new String[0];
+    private volatile SpellConfig[] spellsByOrdinal = new SpellConfig[0];
     
     public YellSpellsConfig() {
         // Initialize default spells - spells are now handled by Magic System mod via /cast commands
         spells.put("fireball", SpellConfig.ofSingle("fireball", 2000, 0.6f, true));
         spells.put("safedescent", SpellConfig.ofSingle("safe descent", 40000, 0.6f, false));
         spells.put("greatwall", SpellConfig.ofSingle("great wall", 10000, 0.6f, true));
+        assignOrdinals();
     }
     
     public void load() {
@@ -55,15 +97,56 @@ public class YellSpellsConfig {
                 if (json.has("audioBufferSize")) audioBufferSize = json.get("audioBufferSize").getAsInt();
                 if (json.has("vadThreshold")) vadThreshold = json.get("vadThreshold").getAsFloat();
                 if (json.has("sampleRate")) sampleRate = json.get("sampleRate").getAsInt();
+                if (json.has("vadMode")) vadMode = json.get("vadMode").getAsString();
+                if (json.has("vadGating")) vadGating = json.get("vadGating").getAsBoolean();
+                if (json.has("vadPreRollMs")) vadPreRollMs = json.get("vadPreRollMs").getAsInt();
+                if (json.has("vadHangoverMs")) vadHangoverMs = json.get("vadHangoverMs").getAsInt();
+                if (json.has("endpointing")) endpointing = json.get("endpointing").getAsBoolean();
+                if (json.has("minSpeechMs")) minSpeechMs = json.get("minSpeechMs").getAsInt();
+                if (json.has("minSilenceMs")) minSilenceMs = json.get("minSilenceMs").getAsInt();
+                if (json.has("maxUtteranceMs")) maxUtteranceMs = json.get("maxUtteranceMs").getAsInt();
+                if (json.has("partialIntervalMs")) partialIntervalMs = json.get("partialIntervalMs").getAsInt();
+                if (json.has("streamWindowMs")) streamWindowMs = json.get("streamWindowMs").getAsInt();
+                if (json.has("streamStrideMs")) streamStrideMs = json.get("streamStrideMs").getAsInt();
+                if (json.has("targetLatencyMs")) targetLatencyMs = json.get("targetLatencyMs").getAsInt();
+                if (json.has("kwsMode")) kwsMode = json.get("kwsMode").getAsString();
+                if (json.has("kwsThreshold")) kwsThreshold = json.get("kwsThreshold").getAsFloat();
                 if (json.has("modelName")) modelName = json.get("modelName").getAsString();
+                if (json.has("sttThreads")) sttThreads = json.get("sttThreads").getAsInt();
+                if (json.has("autoCalibrate")) autoCalibrate = json.get("autoCalibrate").getAsBoolean();
+                if (json.has("calibratedFor")) calibratedFor = json.get("calibratedFor").getAsString();
+                if (json.has("modelSha256")) {
+                    modelSha256 = new HashMap<>();
+                    if (json.get("modelSha256").isJsonObject()) {
+                        for (var entry : json.getAsJsonObject("modelSha256").entrySet()) {
+                            modelSha256.put(entry.getKey(), entry.getValue().getAsString());
+                        }
+                    } else if (!json.get("modelSha256").getAsString().isEmpty()) {
+                        // Back-compat: a single hash was meant for the model configured with it
+                        modelSha256.put(modelName, json.get("modelSha256").getAsString());
+                    }
+                }
+                if (json.has("downloadConnections")) downloadConnections = json.get("downloadConnections").getAsInt();
                 if (json.has("confidenceThreshold")) confidenceThreshold = json.get("confidenceThreshold").getAsFloat();
                 if (json.has("stabilityThreshold")) stabilityThreshold = json.get("stabilityThreshold").getAsInt();
                 if (json.has("maxPartialLength")) maxPartialLength = json.get("maxPartialLength").getAsInt();
+                if (json.has("decoderContexts")) decoderContexts = json.get("decoderContexts").getAsInt();
+                if (json.has("adaptiveAudioContext")) adaptiveAudioContext = json.get("adaptiveAudioContext").getAsBoolean();
+                if (json.has("keywordPrompt")) keywordPrompt = json.get("keywordPrompt").getAsBoolean();
+                if (json.has("earlyStopOnKeyword")) earlyStopOnKeyword = json.get("earlyStopOnKeyword").getAsBoolean();
+                if (json.has("fuzzyMatching")) fuzzyMatching = json.get("fuzzyMatching").getAsBoolean();
+                if (json.has("fuzzyMaxDistance")) fuzzyMaxDistance = json.get("fuzzyMaxDistance").getAsInt();
+                if (json.has("serverRecognition")) serverRecognition = json.get("serverRecognition").getAsBoolean();
+                if (json.has("serverSttBackend")) serverSttBackend = json.get("serverSttBackend").getAsString();
+                if (json.has("serverModelPath")) serverModelPath = json.get("serverModelPath").getAsString();
+                if (json.has("serverDecoderContexts")) serverDecoderContexts = json.get("serverDecoderContexts").getAsInt();
                 if (json.has("globalCooldown")) globalCooldown = json.get("globalCooldown").getAsInt();
                 if (json.has("requirePermission")) requirePermission = json.get("requirePermission").getAsBoolean();
                 if (json.has("maxTimeSkew")) maxTimeSkew = json.get("maxTimeSkew").getAsInt();
                 if (json.has("nonceWindow")) nonceWindow = json.get("nonceWindow").getAsInt();
                 if (json.has("enableRaycastValidation")) enableRaycastValidation = json.get("enableRaycastValidation").getAsBoolean();
+                if (json.has("maxIntentsPerSecond")) maxIntentsPerSecond = json.get("maxIntentsPerSecond").getAsInt();
+                if (json.has("intentBurst")) intentBurst = json.get("intentBurst").getAsInt();
                 
                 // Load spells (robust against missing fields)
                 if (json.has("spells")) {
@@ -109,6 +192,31 @@ public class YellSpellsConfig {
         } catch (IOException e) {
             YellSpellsMod.LOGGER.error("Failed to load configuration", e);
         }
+        assignOrdinals();
+        revision++;
+    }
+    
+    public int getRevision() {
+        return revision;
+    }
+    
+    private synchronized void assignOrdinals() {
+        for (Map.Entry<String, SpellConfig> entry : spells.entrySet()) {
+            entry.getValue().ordinal = spellOrdinals.computeIfAbsent(entry.getKey(), k -> spellOrdinals.size());
+        }
+        String[] ids = new String[spellOrdinals.size()];
+        SpellConfig[] configs = new SpellConfig[ids.length];
+        for (Map.Entry<String, SpellConfig> entry : spells.entrySet()) {
+            ids[entry.getValue().ordinal] = entry.getKey();
+            configs[entry.getValue().ordinal] = entry.getValue();
+        }
+        spellIdsByOrdinal = ids;
+        spellsByOrdinal = configs;
+    }
+    
+    /** Upper bound (exclusive) of {@link SpellConfig#ordinal} over every spell loaded so far. */
+    public synchronized int getSpellOrdinalCount() {
+        return spellOrdinals.size();
     }
     
     public void save() {
@@ -119,15 +227,48 @@ public class YellSpellsConfig {
             json.addProperty("audioBufferSize", audioBufferSize);
             json.addProperty("vadThreshold", vadThreshold);
             json.addProperty("sampleRate", sampleRate);
+            json.addProperty("vadMode", vadMode);
+            json.addProperty("vadGating", vadGating);
+            json.addProperty("vadPreRollMs", vadPreRollMs);
+            json.addProperty("vadHangoverMs", vadHangoverMs);
+            json.addProperty("endpointing", endpointing);
+            json.addProperty("minSpeechMs", minSpeechMs);
+            json.addProperty("minSilenceMs", minSilenceMs);
+            json.addProperty("maxUtteranceMs", maxUtteranceMs);
+            json.addProperty("partialIntervalMs", partialIntervalMs);
+            json.addProperty("streamWindowMs", streamWindowMs);
+            json.addProperty("streamStrideMs", streamStrideMs);
+            json.addProperty("targetLatencyMs", targetLatencyMs);
+            json.addProperty("kwsMode", kwsMode);
+            json.addProperty("kwsThreshold", kwsThreshold);
             json.addProperty("modelName", modelName);
+            json.addProperty("sttThreads", sttThreads);
+            json.addProperty("autoCalibrate", autoCalibrate);
+            json.addProperty("calibratedFor", calibratedFor);
+            JsonObject hashesJson = new JsonObject();
+            for (Map.Entry<String, String> entry : modelSha256.entrySet()) hashesJson.addProperty(entry.getKey(), entry.getValue());
+            json.add("modelSha256", hashesJson);
+            json.addProperty("downloadConnections", downloadConnections);
             json.addProperty("confidenceThreshold", confidenceThreshold);
             json.addProperty("stabilityThreshold", stabilityThreshold);
             json.addProperty("maxPartialLength", maxPartialLength);
+            json.addProperty("decoderContexts", decoderContexts);
+            json.addProperty("adaptiveAudioContext", adaptiveAudioContext);
+            json.addProperty("keywordPrompt", keywordPrompt);
+            json.addProperty("earlyStopOnKeyword", earlyStopOnKeyword);
+            json.addProperty("fuzzyMatching", fuzzyMatching);
+            json.addProperty("fuzzyMaxDistance", fuzzyMaxDistance);
+            json.addProperty("serverRecognition", serverRecognition);
+            json.addProperty("serverSttBackend", serverSttBackend);
+            json.addProperty("serverModelPath", serverModelPath);
+            json.addProperty("serverDecoderContexts", serverDecoderContexts);
             json.addProperty("globalCooldown", globalCooldown);
             json.addProperty("requirePermission", requirePermission);
             json.addProperty("maxTimeSkew", maxTimeSkew);
             json.addProperty("nonceWindow", nonceWindow);
             json.addProperty("enableRaycastValidation", enableRaycastValidation);
+            json.addProperty("maxIntentsPerSecond", maxIntentsPerSecond);
+            json.addProperty("intentBurst", intentBurst);
             
             // Save spells
             JsonObject spellsJson = new JsonObject();
@@ -158,6 +299,23 @@ public class YellSpellsConfig {
         return spells.get(spellId);
     }
     
+    /** @return the spell with this {@link SpellConfig#ordinal}, or null if there is none (any more) */
+    public SpellConfig getSpell(int ordinal) {
+        SpellConfig[] configs = spellsByOrdinal;
+        return ordinal >= 0 && ordinal < configs.length ? configs[ordinal] : null;
+    }
+    
+    /** @return the id of the spell with this {@link SpellConfig#ordinal}, or null if there is none (any more) */
+    public String getSpellId(int ordinal) {
+        String[] ids = spellIdsByOrdinal;
+        return ordinal >= 0 && ordinal < ids.length ? ids[ordinal] : null;
+    }
+    
+    /** Spell ids indexed by ordinal, with null for removed spells; a copy. */
+    public String[] getSpellIdsByOrdinal() {
+        return spellIdsByOrdinal.clone();
+    }
+    
     public static class SpellConfig {
         public java.util.List<String> keywords;
         public int cooldown; // ms
@@ -165,6 +323,7 @@ public class YellSpellsConfig {
         public boolean requiresTarget;
         public boolean enabled;
         public String command; // optional override (e.g., "cast fireball power=2")
+        public int ordinal = -1; // dense index set on load, stable across reloads; not saved
         
         public SpellConfig(java.util.List<String> keywords, int cooldown, float confidenceThreshold, boolean requiresTarget, boolean enabled, String command) {
             this.keywords = keywords;
@@ -0,0 +1,55 @@
+package com.yellspells.network;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket for one player's cast intents, checked before anything else is done with an intent
+ * so a flood costs one CAS per packet rather than an HMAC and a log line. Kept as a single
+ * "theoretical arrival time" (the generic cell rate algorithm): each accepted intent pushes it one
+ * interval further, and an intent is dropped when it would have to be more than {@code burst - 1}
+ * intervals ahead of now. Equivalent to a bucket of {@code burst} tokens refilled at
+ * {@code perSecond}, without a refill timer or a lock.
+ */
+final class IntentRateLimiter {
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  /** THROTTLED is the first drop after an accepted intent, so a flood can be logged once. */
+  enum Result { ACCEPTED, THROTTLED, DROPPED }
+
+  private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicBoolean throttling = new AtomicBoolean();
+
+  /**
+   * @param perSecond sustained intents per second; <= 0 disables the limit
+   * @param burst intents accepted back to back after a quiet period (at least 1)
+   */
+  Result tryAcquire(int perSecond, int burst) {
+    return tryAcquire(perSecond, burst, System.nanoTime());
+  }
+
+  Result tryAcquire(int perSecond, int burst, long now) {
+    if (perSecond <= 0) return Result.ACCEPTED;
+    long interval = NANOS_PER_SECOND / perSecond;
+    long tolerance = interval * (Math.max(1, burst) - 1);
+    while (true) {
+      long tat = arrival.get();
+      long start = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+      if (start - now > tolerance) {
+        dropped.incrementAndGet();
+        return throttling.compareAndSet(false, true) ? Result.THROTTLED : Result.DROPPED;
+      }
+      if (arrival.compareAndSet(tat, start + interval)) {
+        if (throttling.get()) throttling.set(false);
+        return Result.ACCEPTED;
+      }
+    }
+  }
+
+  /** Intents dropped since the session started. */
+  long dropped() {
+    return dropped.get();
+  }
+}
@@ -0,0 +1,91 @@
+package com.yellspells.network;
+
+import com.yellspells.network.packets.CastIntentPacket;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * HMAC-SHA256 over cast intents for one session key, shared by the client (signing) and the server
+ * (verifying). The {@link Mac} is keyed once when the session starts and reused for every intent;
+ * the signed bytes are a fixed binary layout written into a reused buffer:
+ *
+ * <pre>
+ *   byte    layout version (2)
+ *   int     spell ordinal
+ *   int     spell registry version
+ *   int     confidence (float bits)
+ *   long    client tick
+ *   long    timestamp
+ *   long x3 ray direction x, y, z (double bits)
+ *   int     nonce
+ * </pre>
+ *
+ * Each instance belongs to one session; calls are synchronized, so the network thread and any
+ * other thread can share it.
+ */
+public final class IntentSigner {
+
+  public static final int MAC_LENGTH = 32;
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final byte LAYOUT_VERSION = 2;
+
+  private final Mac mac;
+  private final ByteBuffer message = ByteBuffer.allocate(1 + 4 + 4 + 4 + 8 + 8 + 3 * 8 + 4);
+  private final byte[] expected = new byte[MAC_LENGTH];
+
+  /** @throws IllegalStateException if the JRE has no HmacSHA256 (every JRE has) or the key is empty */
+  public IntentSigner(byte[] key) {
+    try {
+      mac = Mac.getInstance(ALGORITHM);
+      mac.init(new SecretKeySpec(key, ALGORITHM));
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      throw new IllegalStateException("Cannot set up " + ALGORITHM, e);
+    }
+  }
+
+  /** @return a new {@value #MAC_LENGTH}-byte MAC for {@code pkt} */
+  public synchronized byte[] sign(CastIntentPacket pkt) {
+    byte[] out = new byte[MAC_LENGTH];
+    encode(pkt);
+    compute(out);
+    return out;
+  }
+
+  /** Constant-time check of {@code pkt.hmac} against the MAC of its fields. */
+  public synchronized boolean verify(CastIntentPacket pkt) {
+    if (pkt.hmac == null || pkt.hmac.length != MAC_LENGTH) return false;
+    encode(pkt);
+    compute(expected);
+    return MessageDigest.isEqual(expected, pkt.hmac);
+  }
+
+  private void encode(CastIntentPacket pkt) {
+    message.clear();
+    message.put(LAYOUT_VERSION);
+    message.putInt(pkt.spellOrdinal);
+    message.putInt(pkt.registryVersion);
+    message.putInt(Float.floatToIntBits(pkt.confidence));
+    message.putLong(pkt.clientTick);
+    message.putLong(pkt.timestamp);
+    message.putLong(Double.doubleToLongBits(pkt.rayX));
+    message.putLong(Double.doubleToLongBits(pkt.rayY));
+    message.putLong(Double.doubleToLongBits(pkt.rayZ));
+    message.putInt(pkt.nonce);
+    message.flip();
+  }
+
+  // doFinal resets the Mac to its keyed initial state, ready for the next intent
+  private void compute(byte[] out) {
+    mac.update(message);
+    try {
+      mac.doFinal(out, 0);
+    } catch (ShortBufferException e) {
+      throw new IllegalStateException(e); // out is always MAC_LENGTH bytes
+    }
+  }
+}
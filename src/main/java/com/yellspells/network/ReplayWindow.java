@@ -0,0 +1,76 @@
+package com.yellspells.network;
+
+/**
+ * Anti-replay state for one session, in the style of IPsec (RFC 6479): a fixed ring of 64-bit
+ * blocks over the highest nonce seen so far, so each check is O(1) time and the memory per player
+ * never grows. A nonce is accepted once; nonces more than the window size below the highest one are
+ * rejected as too old, since they can no longer be told apart from replays. Clients number their
+ * intents 1, 2, 3, ... per session, so out-of-order delivery within the window is still accepted.
+ *
+ * <p>Timestamps are checked against the clock offset seen on the session's first accepted intent
+ * rather than against the server clock directly, so a client whose clock is minutes off can still
+ * cast while an intent held back for longer than {@code maxTimeSkew} is refused.
+ */
+final class ReplayWindow {
+
+  enum Result { ACCEPTED, SKEWED, TOO_OLD, REPLAYED }
+
+  private static final int BLOCK_BITS = 64;
+
+  private final long[] blocks;
+  private final long windowSize;
+  private long highest = -1;
+  private boolean hasOffset = false;
+  private long clockOffset; // server time - client time on the first accepted intent
+
+  /** @param windowSize nonces tracked below the highest one; rounded up to whole blocks */
+  ReplayWindow(int windowSize) {
+    int words = (Math.max(BLOCK_BITS, windowSize) + BLOCK_BITS - 1) / BLOCK_BITS;
+    // One extra block: the block holding the highest nonce is only partly inside the window
+    blocks = new long[words + 1];
+    this.windowSize = (long) words * BLOCK_BITS;
+  }
+
+  /**
+   * Check one verified intent and, if accepted, record its nonce.
+   * @param nonce the client's per-session counter, read as unsigned
+   * @param clientTime the intent's timestamp (client clock, ms)
+   * @param serverTime now on the server clock (ms)
+   * @param maxSkew how far the clock offset may drift from the session's first intent (ms); <= 0 disables
+   */
+  synchronized Result check(int nonce, long clientTime, long serverTime, long maxSkew) {
+    long seq = Integer.toUnsignedLong(nonce);
+    long offset = serverTime - clientTime;
+    if (hasOffset && maxSkew > 0 && Math.abs(offset - clockOffset) > maxSkew) return Result.SKEWED;
+    if (highest >= 0 && seq + windowSize <= highest) return Result.TOO_OLD;
+
+    if (seq > highest) {
+      advanceTo(seq);
+    } else if ((blocks[block(seq)] & bit(seq)) != 0) {
+      return Result.REPLAYED;
+    }
+    blocks[block(seq)] |= bit(seq);
+    if (!hasOffset) {
+      clockOffset = offset;
+      hasOffset = true;
+    }
+    return Result.ACCEPTED;
+  }
+
+  // Clear the blocks that slide into the window between the old and the new highest nonce
+  private void advanceTo(long seq) {
+    long from = highest < 0 ? seq / BLOCK_BITS : highest / BLOCK_BITS + 1;
+    long to = seq / BLOCK_BITS;
+    long clear = Math.min(to - from + 1, blocks.length);
+    for (long i = 0; i < clear; i++) blocks[(int) ((to - i) % blocks.length)] = 0;
+    highest = seq;
+  }
+
+  private int block(long seq) {
+    return (int) ((seq / BLOCK_BITS) % blocks.length);
+  }
+
+  private static long bit(long seq) {
+    return 1L << (seq % BLOCK_BITS);
+  }
+}
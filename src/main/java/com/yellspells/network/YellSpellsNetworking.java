@@ -1,24 +1,28 @@
 package com.yellspells.network;
 
 import com.yellspells.YellSpellsMod;
+import com.yellspells.config.YellSpellsConfig;
 import com.yellspells.network.packets.CastIntentPacket;
 import com.yellspells.network.packets.SessionKeyPacket;
+import com.yellspells.network.packets.SpellRegistryPacket;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public final class YellSpellsNetworking {
 
@@ -27,11 +31,21 @@ public final class YellSpellsNetworking {
   public static final Identifier SESSION_KEY_CHANNEL = YellSpellsMod.id("session_key");
   public static final Identifier INTENT_ID = CAST_INTENT_CHANNEL;
 
-  private static final Map<UUID, byte[]> SESSION_KEYS = new ConcurrentHashMap<>();
+  // Everything the server keeps per connected player; dropped on disconnect
+  private record Session(IntentRateLimiter limiter, IntentSigner signer, ReplayWindow replay) {}
+
+  private static final Map<UUID, Session> SESSIONS = new ConcurrentHashMap<>();
+  private static final LongAdder DROPPED_INTENTS = new LongAdder();
   private static final SecureRandom RNG = new SecureRandom();
 
-  // client-cache of session key
+  // The server's spell ids -> ordinals, as last sent in a SpellRegistryPacket
+  private record ClientSpellRegistry(int version, Map<String, Integer> ordinals) {}
+
+  // client-cache of session key, a signer keyed with it, the session's intent counter and spell registry
   private static volatile byte[] clientSessionKey;
+  private static volatile IntentSigner clientSigner;
+  private static final AtomicInteger clientNonce = new AtomicInteger();
+  private static volatile ClientSpellRegistry clientSpells;
 
   // ===== Server wiring =====
   public static void registerServer() {
@@ -41,25 +55,61 @@ public final class YellSpellsNetworking {
   public static void init() {
     // Register payload types
     PayloadTypeRegistry.playS2C().register(SessionKeyPacket.ID, SessionKeyPacket.CODEC);
+    PayloadTypeRegistry.playS2C().register(SpellRegistryPacket.ID, SpellRegistryPacket.CODEC);
     PayloadTypeRegistry.playC2S().register(CastIntentPacket.ID, CastIntentPacket.CODEC);
     
     // server receiver for intents
     ServerPlayNetworking.registerGlobalReceiver(CastIntentPacket.ID, (payload, context) -> {
-      YellSpellsMod.LOGGER.info("Server: Received cast intent for spell '{}' from player {}", 
-        payload.spellId, context.player().getName().getString());
-      
-      byte[] key = SESSION_KEYS.get(context.player().getUuid());
-      if (key == null) {
-        YellSpellsMod.LOGGER.warn("Server: No session key found for player {}", context.player().getName().getString());
+      Session session = SESSIONS.get(context.player().getUuid());
+      if (session == null) {
+        // Ahead of the rate limiter (which lives in the session), so a flood must not reach the log at WARN
+        DROPPED_INTENTS.increment();
+        YellSpellsMod.LOGGER.debug("Server: No session key found for player {}", context.player().getName().getString());
+        return;
+      }
+
+      // First, so a flood is shed before any HMAC or logging
+      YellSpellsConfig cfg = YellSpellsMod.getConfig();
+      IntentRateLimiter.Result rate = session.limiter().tryAcquire(cfg.maxIntentsPerSecond, cfg.intentBurst);
+      if (rate != IntentRateLimiter.Result.ACCEPTED) {
+        DROPPED_INTENTS.increment();
+        if (rate == IntentRateLimiter.Result.THROTTLED) {
+          YellSpellsMod.LOGGER.warn("Server: Player {} sends more than {} cast intents per second; dropping the excess",
+            context.player().getName().getString(), cfg.maxIntentsPerSecond);
+        }
         return;
       }
-      
-      if (!verifyHmac(payload, key)) {
+
+      YellSpellsMod.LOGGER.debug("Server: Received cast intent for spell #{} from player {}",
+        payload.spellOrdinal, context.player().getName().getString());
+
+      if (!session.signer().verify(payload)) {
         YellSpellsMod.LOGGER.warn("Server: HMAC verification failed for player {}", context.player().getName().getString());
         return;
       }
 
-      // TODO: add skew/nonce/rate-limits here or in pkt.applyServer
+      // Only after the HMAC, so forged intents cannot move the window
+      ReplayWindow.Result replay = session.replay().check(payload.nonce, payload.timestamp,
+        System.currentTimeMillis(), cfg.maxTimeSkew);
+      if (replay != ReplayWindow.Result.ACCEPTED) {
+        YellSpellsMod.LOGGER.warn("Server: Rejected cast intent from player {}: {} (nonce {})",
+          context.player().getName().getString(), replay, Integer.toUnsignedLong(payload.nonce));
+        return;
+      }
+
+      // Sent before the last reload reached the client; the new registry is already on its way
+      if (payload.registryVersion != cfg.getRevision()) {
+        YellSpellsMod.LOGGER.debug("Server: Dropped cast intent from player {} made with spell registry {} (now {})",
+          context.player().getName().getString(), payload.registryVersion, cfg.getRevision());
+        return;
+      }
+      payload.spellId = cfg.getSpellId(payload.spellOrdinal);
+      if (payload.spellId == null) {
+        YellSpellsMod.LOGGER.warn("Server: Unknown spell #{} from player {}", payload.spellOrdinal,
+          context.player().getName().getString());
+        return;
+      }
+
       YellSpellsMod.LOGGER.info("Server: Executing spell '{}' for player {}", payload.spellId, context.player().getName().getString());
       context.server().execute(() -> payload.applyServer(context.player()));
     });
@@ -68,12 +118,23 @@ public final class YellSpellsNetworking {
     ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
       byte[] key = new byte[32];
       RNG.nextBytes(key);
-      SESSION_KEYS.put(handler.player.getUuid(), key);
+      SESSIONS.put(handler.player.getUuid(),
+        new Session(new IntentRateLimiter(), new IntentSigner(key), new ReplayWindow(YellSpellsMod.getConfig().nonceWindow)));
       sendSessionKey(handler.player, key);
+      sendSpellRegistry(handler.player);
+    });
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+      Session session = SESSIONS.remove(handler.player.getUuid());
+      if (session != null && session.limiter().dropped() > 0) {
+        YellSpellsMod.LOGGER.info("Server: Dropped {} rate-limited cast intents from player {} this session",
+          session.limiter().dropped(), handler.player.getName().getString());
+      }
     });
-    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
-      SESSION_KEYS.remove(handler.player.getUuid())
-    );
+  }
+
+  /** Cast intents dropped by the per-player rate limit, or sent without a session, since the server started. */
+  public static long droppedIntents() {
+    return DROPPED_INTENTS.sum();
   }
 
   private static void sendSessionKey(ServerPlayerEntity player, byte[] key) {
@@ -82,35 +143,16 @@ public final class YellSpellsNetworking {
     ServerPlayNetworking.send(player, new SessionKeyPacket(key));
   }
 
-  private static boolean verifyHmac(CastIntentPacket pkt, byte[] key) {
-    try {
-      Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(key, "HmacSHA256"));
-      mac.update(pkt.spellId.getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Float.toString(pkt.confidence).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Long.toString(pkt.clientTick).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Long.toString(pkt.timestamp).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(doubleToBytes(pkt.rayX));
-      mac.update(doubleToBytes(pkt.rayY));
-      mac.update(doubleToBytes(pkt.rayZ));
-      mac.update(intToBytes(pkt.nonce));
-      byte[] expected = mac.doFinal();
-      return java.util.Arrays.equals(expected, pkt.hmac);
-    } catch (Exception e) {
-      return false;
+  /** Send the current spell registry to every player with a session, e.g. after a config reload. */
+  public static void sendSpellRegistry(MinecraftServer server) {
+    for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+      if (SESSIONS.containsKey(player.getUuid())) sendSpellRegistry(player);
     }
   }
 
-  private static byte[] intToBytes(int v) {
-    return new byte[]{ (byte)(v>>>24), (byte)(v>>>16), (byte)(v>>>8), (byte)v };
-  }
-  private static byte[] doubleToBytes(double d) {
-    long v = Double.doubleToLongBits(d);
-    return new byte[]{ (byte)(v>>>56),(byte)(v>>>48),(byte)(v>>>40),(byte)(v>>>32),(byte)(v>>>24),(byte)(v>>>16),(byte)(v>>>8),(byte)v };
+  private static void sendSpellRegistry(ServerPlayerEntity player) {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    ServerPlayNetworking.send(player, new SpellRegistryPacket(cfg.getRevision(), cfg.getSpellIdsByOrdinal()));
   }
 
   // ===== Client wiring =====
@@ -122,47 +164,74 @@ public final class YellSpellsNetworking {
     ClientPlayNetworking.registerGlobalReceiver(SessionKeyPacket.ID, (payload, context) -> {
       context.client().execute(() -> {
         clientSessionKey = payload.sessionKey();
+        clientSigner = new IntentSigner(clientSessionKey);
+        clientNonce.set(0); // the server starts a fresh replay window per session
         YellSpellsMod.LOGGER.info("Received session key from server (length: {})", clientSessionKey.length);
       });
     });
+    ClientPlayNetworking.registerGlobalReceiver(SpellRegistryPacket.ID, (payload, context) -> {
+      Map<String, Integer> ordinals = new HashMap<>();
+      String[] ids = payload.spellIds();
+      for (int i = 0; i < ids.length; i++) {
+        if (!ids[i].isEmpty()) ordinals.put(ids[i], i);
+      }
+      clientSpells = new ClientSpellRegistry(payload.version(), ordinals);
+      YellSpellsMod.LOGGER.debug("Received {} spell ids from server (registry {})", ordinals.size(), payload.version());
+    });
+    // Nothing from this session may sign or name spells on the next server
+    ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+      clientSpells = null;
+      clientSigner = null;
+      clientSessionKey = null;
+      clientNonce.set(0);
+    });
   }
 
   public static byte[] getClientSessionKey() {
     return clientSessionKey;
   }
 
-  public static void sendCastIntent(String spellId, float confidence, int clientTick, long timestamp,
-                                    double rayX, double rayY, double rayZ) {
-    if (!ClientPlayNetworking.canSend(CAST_INTENT_CHANNEL)) return;
-    byte[] key = clientSessionKey;
-    if (key == null) return;
+  /** Signer for the current session key, or null before the server sent one. */
+  public static IntentSigner getClientSigner() {
+    return clientSigner;
+  }
 
-    int nonce = RNG.nextInt();
-    CastIntentPacket pkt = new CastIntentPacket(spellId, confidence, clientTick, timestamp, rayX, rayY, rayZ, nonce, null);
-    pkt.hmac = hmac(pkt, key);
+  /** True while the spell registry {@code version} from the current server is the one in use. */
+  public static boolean hasClientSpellRegistry(int version) {
+    ClientSpellRegistry spells = clientSpells;
+    return spells != null && spells.version() == version;
+  }
 
-    ClientPlayNetworking.send(pkt);
+  /** Next nonce for a cast intent in this session: 1, 2, 3, ... as the server's replay window expects. */
+  public static int nextClientNonce() {
+    return clientNonce.incrementAndGet();
   }
 
-  private static byte[] hmac(CastIntentPacket pkt, byte[] key) {
-    try {
-      Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(key, "HmacSHA256"));
-      mac.update(pkt.spellId.getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Float.toString(pkt.confidence).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Long.toString(pkt.clientTick).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(Long.toString(pkt.timestamp).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte) 0);
-      mac.update(doubleToBytes(pkt.rayX));
-      mac.update(doubleToBytes(pkt.rayY));
-      mac.update(doubleToBytes(pkt.rayZ));
-      mac.update(intToBytes(pkt.nonce));
-      return mac.doFinal();
-    } catch (Exception e) {
-      return new byte[32];
+  /**
+   * A signed intent naming {@code spellId} by its ordinal in the server's spell registry.
+   * @return null before the server sent a session key and registry, or if it has no such spell
+   */
+  public static CastIntentPacket createCastIntent(String spellId, float confidence, long clientTick, long timestamp,
+                                                  double rayX, double rayY, double rayZ) {
+    IntentSigner signer = clientSigner;
+    ClientSpellRegistry spells = clientSpells;
+    if (signer == null || spells == null) return null;
+    Integer ordinal = spells.ordinals().get(spellId);
+    if (ordinal == null) {
+      YellSpellsMod.LOGGER.debug("Server has no spell '{}'", spellId);
+      return null;
     }
+
+    CastIntentPacket pkt = new CastIntentPacket(spellId, ordinal, spells.version(), confidence, clientTick, timestamp,
+      rayX, rayY, rayZ, nextClientNonce(), null);
+    pkt.hmac = signer.sign(pkt);
+    return pkt;
+  }
+
+  public static void sendCastIntent(String spellId, float confidence, int clientTick, long timestamp,
+                                    double rayX, double rayY, double rayZ) {
+    if (!ClientPlayNetworking.canSend(CAST_INTENT_CHANNEL)) return;
+    CastIntentPacket pkt = createCastIntent(spellId, confidence, clientTick, timestamp, rayX, rayY, rayZ);
+    if (pkt != null) ClientPlayNetworking.send(pkt);
   }
 }
@@ -8,16 +8,12 @@ import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.network.packet.CustomPayload;
 import net.minecraft.util.Identifier;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
-import java.util.Arrays;
-
 public final class CastIntentPacket implements CustomPayload {
   public static final CustomPayload.Id<CastIntentPacket> ID = new CustomPayload.Id<>(YellSpellsMod.id("cast_intent"));
   public static final PacketCodec<PacketByteBuf, CastIntentPacket> CODEC = PacketCodec.of(CastIntentPacket::write, CastIntentPacket::read);
-  public final String spellId;
+  public String spellId;            // not sent; resolved from spellOrdinal by the server
+  public final int spellOrdinal;    // index into the server's SpellRegistryPacket, -1 if none
+  public final int registryVersion; // version of that registry
   public final float confidence;
   public final long clientTick;
   public final long timestamp;     // renamed for consistency
@@ -25,10 +21,17 @@ public final class CastIntentPacket implements CustomPayload {
   public final double rayY;
   public final double rayZ;
   public final int nonce;          // simplistic; you can switch to 128-bit later
-  public byte[] hmac;              // 32 bytes
+  public byte[] hmac;              // 32 bytes; see IntentSigner
 
+  /** An intent that never goes over the network, e.g. from server-side recognition. */
   public CastIntentPacket(String spellId, float confidence, long clientTick, long timestamp, double rayX, double rayY, double rayZ, int nonce, byte[] hmac) {
+    this(spellId, -1, 0, confidence, clientTick, timestamp, rayX, rayY, rayZ, nonce, hmac);
+  }
+
+  public CastIntentPacket(String spellId, int spellOrdinal, int registryVersion, float confidence, long clientTick, long timestamp, double rayX, double rayY, double rayZ, int nonce, byte[] hmac) {
     this.spellId = spellId;
+    this.spellOrdinal = spellOrdinal;
+    this.registryVersion = registryVersion;
     this.confidence = confidence;
     this.clientTick = clientTick;
     this.timestamp = timestamp;
@@ -45,7 +48,8 @@ public final class CastIntentPacket implements CustomPayload {
   }
 
   public void write(PacketByteBuf buf) {
-    buf.writeString(spellId);
+    buf.writeVarInt(registryVersion);
+    buf.writeVarInt(spellOrdinal);
     buf.writeFloat(confidence);
     buf.writeVarLong(clientTick);
     buf.writeVarLong(timestamp);
@@ -57,7 +61,8 @@ public final class CastIntentPacket implements CustomPayload {
   }
 
   public static CastIntentPacket read(PacketByteBuf buf) {
-    String spell = buf.readString();
+    int version = buf.readVarInt();
+    int ordinal = buf.readVarInt();
     float conf = buf.readFloat();
     long tick = buf.readVarLong();
     long ts = buf.readVarLong();
@@ -66,49 +71,7 @@ public final class CastIntentPacket implements CustomPayload {
     double rayZ = buf.readDouble();
     int nonce = buf.readInt();
     byte[] hmac = buf.readByteArray();
-    return new CastIntentPacket(spell, conf, tick, ts, rayX, rayY, rayZ, nonce, hmac);
-  }
-
-  // CLIENT: compute HMAC (over all fields except HMAC)
-  public byte[] generateHmac(byte[] key) {
-    try {
-      Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(key, "HmacSHA256"));
-      mac.update(spellId.getBytes(StandardCharsets.UTF_8));
-      mac.update((byte)0);
-      mac.update(Float.toString(confidence).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte)0);
-      mac.update(Long.toString(clientTick).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte)0);
-      mac.update(Long.toString(timestamp).getBytes(StandardCharsets.UTF_8));
-      mac.update((byte)0);
-      mac.update(doubleToBytes(rayX));
-      mac.update(doubleToBytes(rayY));
-      mac.update(doubleToBytes(rayZ));
-      mac.update(intToBytes(nonce));
-      return mac.doFinal();
-    } catch (GeneralSecurityException e) {
-      return new byte[32];
-    }
-  }
-
-  public boolean verifyHmac(byte[] key) {
-    byte[] expected = generateHmac(key);
-    return Arrays.equals(expected, this.hmac);
-  }
-
-  private static byte[] intToBytes(int v) {
-    return new byte[] {
-      (byte)(v >>> 24), (byte)(v >>> 16), (byte)(v >>> 8), (byte) v
-    };
-  }
-
-  private static byte[] doubleToBytes(double v) {
-    long bits = Double.doubleToLongBits(v);
-    return new byte[] {
-      (byte)(bits >>> 56), (byte)(bits >>> 48), (byte)(bits >>> 40), (byte)(bits >>> 32),
-      (byte)(bits >>> 24), (byte)(bits >>> 16), (byte)(bits >>> 8), (byte) bits
-    };
+    return new CastIntentPacket(null, ordinal, version, conf, tick, ts, rayX, rayY, rayZ, nonce, hmac);
   }
 
   // SERVER-side application (re-raycast, cooldowns, etc.)
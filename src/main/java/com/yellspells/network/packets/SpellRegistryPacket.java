@@ -0,0 +1,39 @@
+package com.yellspells.network.packets;
+
+import com.yellspells.YellSpellsMod;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+
+/**
+ * The server's spell ids by ordinal, sent on join and after every config reload, so cast intents can
+ * name their spell by a varint ordinal instead of a string. {@code version} is the server's config
+ * revision; intents carry it back and are only accepted while it is current. Removed spells are sent
+ * as empty strings so later ordinals keep their place.
+ */
+public record SpellRegistryPacket(int version, String[] spellIds) implements CustomPayload {
+  public static final CustomPayload.Id<SpellRegistryPacket> ID = new CustomPayload.Id<>(YellSpellsMod.id("spell_registry"));
+  public static final PacketCodec<PacketByteBuf, SpellRegistryPacket> CODEC = PacketCodec.of(SpellRegistryPacket::write, SpellRegistryPacket::read);
+  // Bounds what a server can make the client allocate
+  private static final int MAX_SPELLS = 4096;
+
+  @Override
+  public CustomPayload.Id<? extends CustomPayload> getId() {
+    return ID;
+  }
+
+  public void write(PacketByteBuf buf) {
+    buf.writeVarInt(version);
+    buf.writeVarInt(spellIds.length);
+    for (String id : spellIds) buf.writeString(id == null ? "" : id);
+  }
+
+  public static SpellRegistryPacket read(PacketByteBuf buf) {
+    int version = buf.readVarInt();
+    int count = buf.readVarInt();
+    if (count < 0 || count > MAX_SPELLS) throw new IllegalArgumentException("Spell registry too large: " + count);
+    String[] ids = new String[count];
+    for (int i = 0; i < count; i++) ids[i] = buf.readString();
+    return new SpellRegistryPacket(version, ids);
+  }
+}
@@ -0,0 +1,44 @@
+package com.yellspells.server.voice;
+
+import com.yellspells.config.YellSpellsConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test backend without a model or native library: every utterance is "heard" as the next enabled
+ * spell keyword in config order, so any speech exercises the whole server pipeline up to the cast.
+ */
+final class MockSttBackend implements SttBackend {
+
+  private final int parallelism;
+  private final Supplier<YellSpellsConfig> config;
+  private final AtomicInteger next = new AtomicInteger();
+
+  MockSttBackend(int parallelism, Supplier<YellSpellsConfig> config) {
+    this.parallelism = Math.max(1, parallelism);
+    this.config = config;
+  }
+
+  @Override
+  public int parallelism() { return parallelism; }
+
+  @Override
+  public Transcript transcribe(float[] samples, int len) {
+    List<String> keywords = new ArrayList<>();
+    for (YellSpellsConfig.SpellConfig spell : config.get().spells.values()) {
+      if (spell != null && spell.enabled && spell.keywords != null && !spell.keywords.isEmpty()) {
+        keywords.add(spell.keywords.get(0));
+      }
+    }
+    if (keywords.isEmpty()) return Transcript.EMPTY;
+    String keyword = keywords.get(Math.floorMod(next.getAndIncrement(), keywords.size()));
+    return new Transcript(keyword, 0.9f);
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,34 @@
+package com.yellspells.server.voice;
+
+import com.yellspells.YellSpellsMod;
+import de.maxhenkel.voicechat.api.VoicechatConnection;
+import de.maxhenkel.voicechat.api.VoicechatPlugin;
+import de.maxhenkel.voicechat.api.VoicechatServerApi;
+import de.maxhenkel.voicechat.api.events.EventRegistration;
+import de.maxhenkel.voicechat.api.events.MicrophonePacketEvent;
+
+/**
+ * Server half of the SVC integration: forwards players' microphone packets to the
+ * {@link ServerVoiceRecognizer} when server-side recognition is running. Sessions follow the game
+ * connection (see {@code YellSpellsMod}), not the voice one, so a voice reconnect keeps the session.
+ */
+public final class SVCServerIntegration implements VoicechatPlugin {
+
+  @Override
+  public String getPluginId() {
+    return "yellspells_server";
+  }
+
+  @Override
+  public void registerEvents(EventRegistration reg) {
+    reg.registerEvent(MicrophonePacketEvent.class, e -> {
+      ServerVoiceRecognizer recognizer = ServerVoiceRecognizer.get();
+      VoicechatConnection sender = e.getSenderConnection();
+      if (recognizer == null || sender == null) return;
+      VoicechatServerApi api = e.getVoicechat();
+      recognizer.onMicrophonePacket(sender.getPlayer().getUuid(), e.getPacket().getOpusEncodedData(), api::createDecoder);
+    });
+
+    YellSpellsMod.LOGGER.info("YellSpells SVC server events registered");
+  }
+}
@@ -0,0 +1,413 @@
+package com.yellspells.server.voice;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.audio.AudioResampler;
+import com.yellspells.audio.UtteranceEndpointer;
+import com.yellspells.audio.VoiceActivityDetector;
+import com.yellspells.stt.SpellDetector;
+import com.yellspells.config.YellSpellsConfig;
+import com.yellspells.network.packets.CastIntentPacket;
+import de.maxhenkel.voicechat.api.opus.OpusDecoder;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.Vec3d;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Server-side recognition of Simple Voice Chat microphone audio, for players whose client cannot
+ * run whisper itself. Each talking player gets a session with its own Opus decoder, resampler, VAD
+ * and endpointer (the same pipeline the client uses); finished utterances go to an {@link SttBackend}
+ * and a recognized keyword is cast through {@link com.yellspells.spells.SpellManager#processCastIntent}.
+ *
+ * <p>Threads: SVC's network thread only queues packets. An audio pool decodes Opus and runs the
+ * per-player pipeline, a decode pool runs the backend, and only the final cast is handed to the
+ * server thread. Fairness: a player's packet queue is bounded (oldest dropped), a session gives up
+ * its audio thread after {@link #AUDIO_BATCH} packets and requeues behind other players, and each
+ * player has at most one utterance waiting for the decoder (a newer one replaces it).
+ *
+ * <p>Sessions follow the player's connection: {@link #add} on join, {@link #remove} on disconnect.
+ * Packets for players without a session (late packets after a disconnect) are dropped, so they
+ * cannot bring a session back. The pipeline itself is only built once a player actually talks.
+ */
+public final class ServerVoiceRecognizer {
+
+  private static final int FRAME = 320;                // 20 ms @16k
+  private static final int MAX_QUEUED_PACKETS = 50;    // 1 s of 20 ms SVC packets
+  private static final int AUDIO_BATCH = 5;            // packets per audio-pool turn
+  private static final long IDLE_END_NANOS = 100_000_000L; // no packets for this long ends the transmission
+  // Queued after a transmission stops: flushes the endpointer with silence
+  private static final byte[] END_OF_TRANSMISSION = new byte[0];
+
+  private static volatile ServerVoiceRecognizer instance;
+  // Bumped by stop() so a start() still loading its model does not publish afterwards
+  private static final AtomicInteger GENERATION = new AtomicInteger();
+
+  private final Supplier<YellSpellsConfig> config;
+  private final SttBackend backend;
+  private final Function<String, String> spellMatcher;
+  private final Caster caster;
+  private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+  private final ExecutorService audioPool;
+  private final ExecutorService decodePool;
+  private final ScheduledExecutorService sweeper;
+
+  // Telemetry; updated from the network, audio and decode threads at once
+  private final LongAdder droppedPackets = new LongAdder();
+  private final LongAdder droppedUtterances = new LongAdder();
+  private final LongAdder utterances = new LongAdder();
+  private final LongAdder casts = new LongAdder();
+
+  /** Where a recognized spell goes: the server thread in game, a recorder in tests. */
+  interface Caster {
+    void cast(UUID player, String spellId, float confidence);
+  }
+
+  ServerVoiceRecognizer(Supplier<YellSpellsConfig> config, SttBackend backend, int audioThreads,
+                        Function<String, String> spellMatcher, Caster caster) {
+    this.config = config;
+    this.backend = backend;
+    this.spellMatcher = spellMatcher;
+    this.caster = caster;
+    this.audioPool = Executors.newFixedThreadPool(audioThreads, daemonThreads("YellSpells-Voice-audio-"));
+    this.decodePool = Executors.newFixedThreadPool(backend.parallelism(), daemonThreads("YellSpells-Voice-decode-"));
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(daemonThreads("YellSpells-Voice-sweep-"));
+    sweeper.scheduleWithFixedDelay(this::endIdleTransmissions, 100, 100, TimeUnit.MILLISECONDS);
+  }
+
+  /** The running recognizer, or null if server-side recognition is off. */
+  public static ServerVoiceRecognizer get() { return instance; }
+
+  /**
+   * Start recognition for {@code server} if enabled in the config. Server thread; the backend
+   * (model load) is built on a background thread and audio is ignored until it is ready.
+   */
+  public static void start(MinecraftServer server) {
+    stop();
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    if (!cfg.serverRecognition) return;
+    int generation = GENERATION.get();
+    Thread loader = new Thread(() -> load(server, cfg, generation), "YellSpells-Voice-load");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  /** Stop recognition and free the backend. */
+  public static void stop() {
+    ServerVoiceRecognizer r;
+    synchronized (ServerVoiceRecognizer.class) {
+      GENERATION.incrementAndGet(); // a backend still loading is discarded
+      r = instance;
+      instance = null;
+    }
+    if (r != null) r.shutdown();
+  }
+
+  private static void load(MinecraftServer server, YellSpellsConfig cfg, int generation) {
+    ServerVoiceRecognizer recognizer;
+    int cores = Runtime.getRuntime().availableProcessors();
+    int contexts = cfg.serverDecoderContexts > 0 ? cfg.serverDecoderContexts : Math.max(1, Math.min(8, cores / 4));
+    int audioThreads = Math.max(1, Math.min(4, cores / 4));
+    SttBackend backend;
+    try {
+      backend = createBackend(cfg, contexts, Math.max(1, cores / 2 / contexts));
+    } catch (RuntimeException e) {
+      YellSpellsMod.LOGGER.error("Server STT: could not start the '{}' backend; server-side recognition is off",
+          cfg.serverSttBackend, e);
+      return;
+    }
+    synchronized (ServerVoiceRecognizer.class) {
+      if (GENERATION.get() != generation) {
+        backend.close();
+        return;
+      }
+      recognizer = new ServerVoiceRecognizer(YellSpellsMod::getConfig, backend, audioThreads,
+          ServerVoiceRecognizer::matchSpell, (player, spell, confidence) -> cast(server, player, spell, confidence));
+      instance = recognizer;
+    }
+    // Players who joined while the model was loading; join and disconnect also run on the server thread
+    server.execute(() -> {
+      if (instance != recognizer) return;
+      for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) recognizer.add(player.getUuid());
+    });
+    YellSpellsMod.LOGGER.info("Server STT: recognizing SVC audio with the '{}' backend ({} decoder(s), {} audio thread(s))",
+        cfg.serverSttBackend, backend.parallelism(), audioThreads);
+  }
+
+  private static SttBackend createBackend(YellSpellsConfig cfg, int contexts, int threads) {
+    if ("mock".equals(cfg.serverSttBackend)) return new MockSttBackend(contexts, YellSpellsMod::getConfig);
+    String modelPath = cfg.serverModelPath == null || cfg.serverModelPath.isBlank()
+        ? defaultModelPath(cfg).toString()
+        : cfg.serverModelPath;
+    int maxSamples = Math.max(0, cfg.vadPreRollMs) * 16 + Math.max(FRAME, cfg.maxUtteranceMs * 16);
+    return new WhisperSttBackend(modelPath, contexts, threads, maxSamples);
+  }
+
+  private static Path defaultModelPath(YellSpellsConfig cfg) {
+    return FabricLoader.getInstance().getGameDir()
+        .resolve("yellspells").resolve("models").resolve("ggml-" + cfg.modelName + ".bin");
+  }
+
+  /** Start a session for a player who joined. Server thread. */
+  public void add(UUID player) {
+    sessions.computeIfAbsent(player, Session::new);
+  }
+
+  /**
+   * Queue one SVC microphone packet. Called on SVC's network thread; never blocks.
+   * Ignored if the player has no session (not joined yet, or already disconnected).
+   * @param opus encoded 20 ms frame, empty when the player stopped transmitting
+   * @param decoders creates this player's Opus decoder on first use
+   */
+  public void onMicrophonePacket(UUID player, byte[] opus, Supplier<OpusDecoder> decoders) {
+    Session s = sessions.get(player);
+    if (s == null) return;
+    if (s.decoders == null) s.decoders = decoders;
+    s.lastPacketNanos = System.nanoTime();
+    byte[] packet = opus == null || opus.length == 0 ? END_OF_TRANSMISSION : opus;
+    while (!s.packets.offer(packet)) {
+      // Overloaded: drop this player's oldest audio rather than delay everyone else
+      if (s.packets.poll() != null) droppedPackets.increment();
+    }
+    schedule(s);
+  }
+
+  /** Forget a player's session (disconnect). */
+  public void remove(UUID player) {
+    Session s = sessions.remove(player);
+    if (s != null) {
+      s.closed = true;
+      schedule(s); // its audio thread releases the Opus decoder
+    }
+  }
+
+  public int sessions() { return sessions.size(); }
+
+  public long getDroppedPackets() { return droppedPackets.sum(); }
+
+  public long getDroppedUtterances() { return droppedUtterances.sum(); }
+
+  public long getUtterances() { return utterances.sum(); }
+
+  public long getCasts() { return casts.sum(); }
+
+  void shutdown() {
+    sweeper.shutdownNow();
+    audioPool.shutdownNow();
+    decodePool.shutdownNow();
+    try {
+      audioPool.awaitTermination(5, TimeUnit.SECONDS);
+      decodePool.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    backend.close();
+    for (Session s : sessions.values()) {
+      s.closed = true;
+      s.release();
+    }
+    sessions.clear();
+  }
+
+  // ===== Audio pool =====
+
+  private void schedule(Session s) {
+    if (!s.scheduled.compareAndSet(false, true)) return;
+    try {
+      audioPool.execute(() -> drain(s));
+    } catch (RejectedExecutionException e) {
+      s.scheduled.set(false); // shutting down
+    }
+  }
+
+  private void drain(Session s) {
+    try {
+      if (s.closed) {
+        s.release();
+        return;
+      }
+      for (int i = 0; i < AUDIO_BATCH; i++) {
+        byte[] packet = s.packets.poll();
+        if (packet == null) break;
+        if (packet == END_OF_TRANSMISSION) {
+          s.endTransmission();
+        } else {
+          s.accept(packet);
+        }
+      }
+    } catch (Throwable t) {
+      YellSpellsMod.LOGGER.error("Server STT: audio processing failed for {}", s.player, t);
+    } finally {
+      s.scheduled.set(false);
+      // Anything left waits behind the other players' sessions; a session closed mid-drain still needs releasing
+      if (s.closed ? s.opus != null : !s.packets.isEmpty()) schedule(s);
+    }
+  }
+
+  // Voice activation and push-to-talk stop sending packets instead of sending silence
+  private void endIdleTransmissions() {
+    long now = System.nanoTime();
+    for (Session s : sessions.values()) {
+      if (s.inUtterance && now - s.lastPacketNanos > IDLE_END_NANOS && s.packets.isEmpty()) {
+        s.inUtterance = false;
+        if (s.packets.offer(END_OF_TRANSMISSION)) schedule(s);
+      }
+    }
+  }
+
+  // ===== Decode pool =====
+
+  private void onUtterance(Session s, float[] samples, int len, boolean isFinal) {
+    if (!isFinal) return;
+    utterances.increment();
+    if (s.pendingUtterance.getAndSet(Arrays.copyOf(samples, len)) != null) droppedUtterances.increment();
+    scheduleDecode(s);
+  }
+
+  private void scheduleDecode(Session s) {
+    if (!s.decoding.compareAndSet(false, true)) return;
+    try {
+      decodePool.execute(() -> decode(s));
+    } catch (RejectedExecutionException e) {
+      s.decoding.set(false);
+    }
+  }
+
+  private void decode(Session s) {
+    try {
+      float[] utterance = s.pendingUtterance.getAndSet(null);
+      if (utterance == null || s.closed) return;
+      long start = System.nanoTime();
+      SttBackend.Transcript t = backend.transcribe(utterance, utterance.length);
+      YellSpellsMod.LOGGER.debug("Server STT: {} ms of audio from {} -> '{}' ({}) in {} ms",
+          utterance.length / 16, s.player, t.text(), t.confidence(), (System.nanoTime() - start) / 1_000_000);
+      String spell = t.text().isEmpty() ? null : spellMatcher.apply(t.text());
+      if (spell != null) {
+        casts.increment();
+        caster.cast(s.player, spell, t.confidence());
+      }
+    } catch (Throwable t) {
+      YellSpellsMod.LOGGER.error("Server STT: decoding failed for {}", s.player, t);
+    } finally {
+      s.decoding.set(false);
+      if (s.pendingUtterance.get() != null) scheduleDecode(s);
+    }
+  }
+
+  private static String matchSpell(String text) {
+    String spell = SpellDetector.automaton().match(text);
+    if (spell != null) return spell;
+    return YellSpellsMod.getConfig().fuzzyMatching ? SpellDetector.fuzzyIndex().match(text) : null;
+  }
+
+  private static void cast(MinecraftServer server, UUID playerId, String spellId, float confidence) {
+    server.execute(() -> {
+      ServerPlayerEntity player = server.getPlayerManager().getPlayer(playerId);
+      if (player == null) return;
+      // Recognized on the server, so there is no client signature; aim where the player looks now
+      Vec3d look = player.getRotationVector();
+      CastIntentPacket intent = new CastIntentPacket(spellId, confidence, server.getTicks(),
+          System.currentTimeMillis(), look.x, look.y, look.z, 0, null);
+      YellSpellsMod.getSpellManager().processCastIntent(player, intent);
+    });
+  }
+
+  // ===== Per-player state =====
+
+  private final class Session {
+    final UUID player;
+    final ArrayBlockingQueue<byte[]> packets = new ArrayBlockingQueue<>(MAX_QUEUED_PACKETS);
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    final AtomicBoolean decoding = new AtomicBoolean();
+    final AtomicReference<float[]> pendingUtterance = new AtomicReference<>();
+    volatile long lastPacketNanos;
+    volatile boolean inUtterance = false;
+    volatile boolean closed = false;
+
+    volatile Supplier<OpusDecoder> decoders; // from the first packet
+
+    // Audio-pool state; the scheduled flag keeps it to one thread at a time.
+    // Built on the first packet, so players who never talk cost no buffers
+    private OpusDecoder opus;
+    private AudioResampler resampler;
+    private VoiceActivityDetector vad;
+    private UtteranceEndpointer endpointer;
+    private float[] silence;
+    private int endFrames;
+    private float[] out;
+
+    Session(UUID player) {
+      this.player = player;
+    }
+
+    private void init() {
+      YellSpellsConfig cfg = config.get();
+      resampler = new AudioResampler();
+      vad = new VoiceActivityDetector(0.005f, 0.003f, 6, "spectral".equals(cfg.vadMode) ? FRAME : 0);
+      // No partials: the server decodes each utterance once
+      endpointer = new UtteranceEndpointer((samples, len, isFinal) -> onUtterance(this, samples, len, isFinal),
+          cfg.vadPreRollMs, cfg.minSpeechMs, cfg.minSilenceMs, cfg.maxUtteranceMs, 0);
+      endFrames = Math.max(1, cfg.minSilenceMs / 20) + 1;
+      silence = new float[FRAME];
+      out = new float[FRAME];
+    }
+
+    void accept(byte[] packet) {
+      if (endpointer == null) init();
+      if (opus == null) opus = decoders.get();
+      short[] pcm48 = opus.decode(packet);
+      if (pcm48 == null || pcm48.length == 0) return;
+      int need = resampler.outLengthFor(pcm48.length);
+      if (out.length < need) out = new float[need];
+      int wrote = resampler.process(pcm48, out);
+      for (int i = 0; i + FRAME <= wrote; i += FRAME) {
+        endpointer.accept(out, i, vad.update(out, i, FRAME));
+      }
+      inUtterance = endpointer.inUtterance();
+    }
+
+    // The player stopped transmitting: end any open utterance and start the next one from a clean decoder
+    void endTransmission() {
+      if (endpointer == null) return;
+      for (int i = 0; i < endFrames && endpointer.inUtterance(); i++) {
+        endpointer.accept(silence, 0, false);
+      }
+      inUtterance = false;
+      if (opus != null) opus.resetState();
+      resampler.reset();
+    }
+
+    void release() {
+      if (opus != null && !opus.isClosed()) opus.close();
+      opus = null;
+      packets.clear();
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+}
@@ -0,0 +1,21 @@
+package com.yellspells.server.voice;
+
+/**
+ * Speech-to-text engine behind server-side recognition. {@link #transcribe} is called from up to
+ * {@link #parallelism()} decode threads at once.
+ */
+public interface SttBackend extends AutoCloseable {
+
+  record Transcript(String text, float confidence) {
+    public static final Transcript EMPTY = new Transcript("", 0f);
+  }
+
+  /** How many utterances this backend can decode concurrently. */
+  int parallelism();
+
+  /** Transcribe {@code samples[0 .. len)} of 16 kHz mono audio; never null. */
+  Transcript transcribe(float[] samples, int len);
+
+  @Override
+  void close();
+}
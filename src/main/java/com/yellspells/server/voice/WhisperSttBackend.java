@@ -0,0 +1,134 @@
+package com.yellspells.server.voice;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.stt.WhisperJNI;
+import com.yellspells.config.YellSpellsConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * whisper.cpp on the server: one loaded model and a fixed set of decoding states, each with its own
+ * direct buffers. A decode thread borrows a state for the duration of one utterance.
+ * If the native library cannot create extra states, a single context decodes on the model's own state.
+ */
+final class WhisperSttBackend implements SttBackend {
+
+  private final WhisperJNI whisper = new WhisperJNI();
+  private final List<Context> all = new ArrayList<>();
+  private final BlockingQueue<Context> idle;
+  private final int maxSamples;
+  private volatile int configuredRevision = -1;
+  private boolean closed = false; // guarded by this
+
+  private static final class Context {
+    final WhisperJNI.State state; // null: the model's own state
+    final FloatBuffer audio;
+    final ByteBuffer text = ByteBuffer.allocateDirect(2048).order(ByteOrder.nativeOrder());
+    final float[] confStable = new float[2];
+
+    Context(WhisperJNI.State state, int maxSamples) {
+      this.state = state;
+      this.audio = ByteBuffer.allocateDirect(4 * maxSamples).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+  }
+
+  /** @throws RuntimeException if the native library is missing or the model cannot be loaded */
+  WhisperSttBackend(String modelPath, int contexts, int threadsPerContext, int maxSamples) {
+    this.maxSamples = maxSamples;
+    whisper.init(modelPath, 16000, threadsPerContext);
+    if (!whisper.available()) {
+      throw new IllegalStateException("whisper could not load " + modelPath);
+    }
+    for (int i = 0; i < Math.max(1, contexts); i++) {
+      WhisperJNI.State state = whisper.createState(threadsPerContext);
+      if (state == null) break;
+      all.add(new Context(state, maxSamples));
+    }
+    if (all.isEmpty()) all.add(new Context(null, maxSamples));
+    idle = new ArrayBlockingQueue<>(all.size(), false, all);
+    YellSpellsMod.LOGGER.info("Server STT: whisper model {} with {} decoder context(s), {} thread(s) each",
+        modelPath, all.size(), threadsPerContext);
+    warmUp(Math.min(maxSamples, 2 * 16000));
+  }
+
+  // One decode of silence per context, so the first player's cast does not pay first-run setup
+  private void warmUp(int samples) {
+    long start = System.nanoTime();
+    float[] silence = new float[samples];
+    for (int i = 0; i < all.size(); i++) transcribe(silence, samples);
+    YellSpellsMod.LOGGER.info("Server STT: warm-up of {} context(s) took {} ms", all.size(), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Override
+  public int parallelism() { return all.size(); }
+
+  @Override
+  public Transcript transcribe(float[] samples, int len) {
+    len = Math.min(len, maxSamples);
+    updateDecodeOptions();
+    Context c;
+    try {
+      c = idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Transcript.EMPTY;
+    }
+    try {
+      c.audio.clear();
+      c.audio.put(samples, 0, len);
+      c.audio.clear();
+      c.text.clear();
+      YellSpellsConfig cfg = YellSpellsMod.getConfig();
+      int audioCtx = cfg.adaptiveAudioContext ? WhisperJNI.audioContextFor(len) : 0;
+      int wrote = c.state != null
+          ? c.state.decode(c.audio, len, audioCtx, c.text, c.confStable)
+          : whisper.decode(c.audio, len, audioCtx, c.text, c.confStable);
+      if (wrote <= 0) return Transcript.EMPTY;
+      byte[] utf8 = new byte[wrote];
+      c.text.limit(wrote);
+      c.text.get(utf8);
+      return new Transcript(new String(utf8, StandardCharsets.UTF_8), c.confStable[0]);
+    } finally {
+      release(c);
+    }
+  }
+
+  private synchronized void release(Context c) {
+    if (closed) {
+      if (c.state != null) c.state.close();
+    } else {
+      idle.add(c);
+    }
+  }
+
+  // Re-apply the keyword prompt / stop words after a config reload
+  private void updateDecodeOptions() {
+    YellSpellsConfig cfg = YellSpellsMod.getConfig();
+    int revision = cfg.getRevision();
+    if (revision == configuredRevision) return;
+    synchronized (this) {
+      if (revision == configuredRevision) return;
+      configuredRevision = revision;
+      whisper.configureForSpells(cfg);
+    }
+  }
+
+  /** Frees idle states now and busy ones when their decode returns; the model goes with the last one. */
+  @Override
+  public synchronized void close() {
+    if (closed) return;
+    closed = true;
+    Context c;
+    while ((c = idle.poll()) != null) {
+      if (c.state != null) c.state.close();
+    }
+    whisper.close();
+  }
+}
@@ -0,0 +1,66 @@
+package com.yellspells.spells;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooldown expiry times per online player. Each player has one {@code long[]}: slot 0 is the global
+ * cooldown and slot {@code 1 + ordinal} the spell with that config ordinal, so a check is an array
+ * read with no string hashing or boxing. Times are nanoseconds since the table was created, from
+ * the monotonic clock, so changing the wall clock neither ends nor extends a cooldown; 0 means never
+ * cast. Players are removed when they disconnect.
+ *
+ * <p>Used from the server thread; the map is concurrent only so a disconnect can never corrupt it.
+ */
+final class CooldownTable {
+    static final int GLOBAL = 0;
+
+    private final Map<UUID, long[]> expiries = new ConcurrentHashMap<>();
+    private final long origin = System.nanoTime();
+
+    /** Slot for the spell with the given config ordinal. */
+    static int spellSlot(int ordinal) {
+        return 1 + ordinal;
+    }
+
+    boolean isOnCooldown(UUID player, int slot) {
+        return isOnCooldown(player, slot, System.nanoTime());
+    }
+
+    /** @param nanoTime now on the {@link System#nanoTime()} scale */
+    boolean isOnCooldown(UUID player, int slot, long nanoTime) {
+        long[] expiry = expiries.get(player);
+        return expiry != null && slot < expiry.length && expiry[slot] > nanoTime - origin;
+    }
+
+    /**
+     * Start the cooldown of {@code slot} and the global one.
+     * @param slots slot count to allocate for a new player (1 + spell ordinal count)
+     */
+    void start(UUID player, int slot, int slots, long cooldownMs, long globalCooldownMs) {
+        start(player, slot, slots, cooldownMs, globalCooldownMs, System.nanoTime());
+    }
+
+    void start(UUID player, int slot, int slots, long cooldownMs, long globalCooldownMs, long nanoTime) {
+        long[] expiry = expiries.get(player);
+        if (expiry == null || expiry.length <= slot) {
+            // First cast, or spells were added by a reload since this player's slot was made
+            long[] grown = new long[Math.max(slots, slot + 1)];
+            if (expiry != null) System.arraycopy(expiry, 0, grown, 0, expiry.length);
+            expiries.put(player, grown);
+            expiry = grown;
+        }
+        long now = nanoTime - origin;
+        expiry[slot] = now + cooldownMs * 1_000_000L;
+        expiry[GLOBAL] = now + globalCooldownMs * 1_000_000L;
+    }
+
+    void remove(UUID player) {
+        expiries.remove(player);
+    }
+
+    void clear() {
+        expiries.clear();
+    }
+}
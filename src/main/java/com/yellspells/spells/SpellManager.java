@@ -15,13 +15,9 @@ import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.World;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 public class SpellManager {
     private final YellSpellsConfig config;
-    private final Map<UUID, Map<String, Long>> playerCooldowns = new HashMap<>();
+    private final CooldownTable cooldowns = new CooldownTable();
     
     public SpellManager(YellSpellsConfig config) {
         this.config = config;
@@ -30,7 +26,9 @@ public class SpellManager {
     public void processCastIntent(ServerPlayerEntity player, CastIntentPacket packet) {
         try {
             // Get spell configuration
-            YellSpellsConfig.SpellConfig spellConfig = config.getSpell(packet.spellId);
+            // Intents from clients name the spell by ordinal; server-side recognition by id
+            YellSpellsConfig.SpellConfig spellConfig = packet.spellOrdinal >= 0
+                ? config.getSpell(packet.spellOrdinal) : config.getSpell(packet.spellId);
             if (spellConfig == null) {
                 YellSpellsMod.LOGGER.warn("Unknown spell {} from player {}", packet.spellId, player.getName().getString());
                 return;
@@ -43,14 +41,20 @@ public class SpellManager {
                 return;
             }
             
+            // Queued casts can run after the player left; they would recreate the player's cooldowns
+            if (player.isDisconnected()) {
+                return;
+            }
+            
             // Check cooldown
-            if (isOnCooldown(player.getUuid(), packet.spellId, spellConfig.cooldown)) {
+            int slot = CooldownTable.spellSlot(spellConfig.ordinal);
+            if (cooldowns.isOnCooldown(player.getUuid(), slot)) {
                 YellSpellsMod.LOGGER.debug("Spell {} on cooldown for player {}", packet.spellId, player.getName().getString());
                 return;
             }
             
             // Check global cooldown
-            if (isOnCooldown(player.getUuid(), "global", config.globalCooldown)) {
+            if (cooldowns.isOnCooldown(player.getUuid(), CooldownTable.GLOBAL)) {
                 YellSpellsMod.LOGGER.debug("Global cooldown active for player {}", player.getName().getString());
                 return;
             }
@@ -71,8 +75,8 @@ public class SpellManager {
             executeCommand(player, command);
             
             // Set cooldowns
-            setCooldown(player.getUuid(), packet.spellId, spellConfig.cooldown);
-            setCooldown(player.getUuid(), "global", config.globalCooldown);
+            cooldowns.start(player.getUuid(), slot, CooldownTable.spellSlot(config.getSpellOrdinalCount()),
+                spellConfig.cooldown, config.globalCooldown);
             
             YellSpellsMod.LOGGER.info("Spell {} cast by {} with confidence {}", 
                 packet.spellId, player.getName().getString(), packet.confidence);
@@ -104,25 +108,6 @@ public class SpellManager {
         }
     }
     
-    private boolean isOnCooldown(UUID playerId, String spellId, int cooldownMs) {
-        Map<String, Long> playerSpells = playerCooldowns.get(playerId);
-        if (playerSpells == null) {
-            return false;
-        }
-        
-        Long lastCast = playerSpells.get(spellId);
-        if (lastCast == null) {
-            return false;
-        }
-        
-        return System.currentTimeMillis() - lastCast < cooldownMs;
-    }
-    
-    private void setCooldown(UUID playerId, String spellId, int cooldownMs) {
-        playerCooldowns.computeIfAbsent(playerId, k -> new HashMap<>())
-            .put(spellId, System.currentTimeMillis());
-    }
-    
     public static void init() {
         // Legacy compatibility method - actual initialization happens in constructor
         YellSpellsMod.LOGGER.info("SpellManager static init called");
@@ -132,8 +117,12 @@ public class SpellManager {
         YellSpellsMod.LOGGER.info("SpellManager initialized for server");
     }
     
+    public void onPlayerDisconnect(ServerPlayerEntity player) {
+        cooldowns.remove(player.getUuid());
+    }
+    
     public void onServerStopping(MinecraftServer server) {
-        playerCooldowns.clear();
+        cooldowns.clear();
         YellSpellsMod.LOGGER.info("SpellManager cleaned up");
     }
     
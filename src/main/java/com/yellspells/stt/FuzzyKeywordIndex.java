@@ -0,0 +1,283 @@
+package com.yellspells.stt;
+
+import com.yellspells.config.YellSpellsConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate spell keyword lookup for transcripts the exact automaton misses
+ * ("fire ball", "fireboll", "great whole").
+ * Keywords are indexed twice. By spelling, with spaces removed, in a BK-tree under Levenshtein
+ * distance: transcript words are joined into short runs (so a split "fire ball" lines up with
+ * "fireball") and each run is looked up with triangle-inequality pruning, which visits only a
+ * small part of the keyword set. And by sound, for keywords of two or more words: word by word
+ * phonetic keys in a hash map, so "great whole" finds "great wall" although it is spelled too
+ * differently for the BK-tree. A phonetic hit needs the same number of words, each with the same
+ * key and first letter; a single word's key collapses too much ("furball" keys like "fireball"),
+ * and runs with another word count ("for bill") never line up. The closest BK-tree hit wins; a
+ * phonetic hit is only used when the BK-tree found nothing.
+ * Immutable once built.
+ */
+public final class FuzzyKeywordIndex {
+
+  private static final int MIN_PHONETIC_KEY = 3;
+
+  private final String[] spellIds;
+  // Space-separated per-word keys -> (first letters of the words, spell)
+  private final Map<String, Sound> phonetic = new HashMap<>();
+  private final Node root;
+  private final int maxDistance;
+  private final int maxWords;
+  private final int maxLength;
+
+  private static final class Node {
+    final String word;
+    final int spell;
+    // Children keyed by their distance to this node; distances are small, so a sparse array
+    Node[] children = new Node[0];
+
+    Node(String word, int spell) {
+      this.word = word;
+      this.spell = spell;
+    }
+  }
+
+  private record Sound(String initials, int spell) {}
+
+  private FuzzyKeywordIndex(String[] spellIds, List<String> keywords, List<Integer> owners, int maxDistance) {
+    this.spellIds = spellIds;
+    this.maxDistance = maxDistance;
+    Node r = null;
+    int words = 1;
+    int longest = 0;
+    for (int k = 0; k < keywords.size(); k++) {
+      String kw = keywords.get(k);
+      words = Math.max(words, kw.split(" ").length);
+      String joined = kw.replace(" ", "");
+      longest = Math.max(longest, joined.length());
+      int spell = owners.get(k);
+      String[] parts = kw.split(" ");
+      if (parts.length > 1) {
+        String key = wordKeys(parts, 0, parts.length);
+        if (key.length() - (parts.length - 1) >= MIN_PHONETIC_KEY) {
+          phonetic.putIfAbsent(key, new Sound(initials(parts, 0, parts.length), spell));
+        }
+      }
+      if (r == null) {
+        r = new Node(joined, spell);
+      } else {
+        insert(r, joined, spell);
+      }
+    }
+    this.root = r;
+    // One extra word so a keyword split in two by the recognizer still lines up
+    this.maxWords = words + 1;
+    this.maxLength = longest + maxDistance;
+  }
+
+  /** Index the enabled spells of {@code config}; spells earlier in the config win ties. */
+  public static FuzzyKeywordIndex build(YellSpellsConfig config, int maxDistance) {
+    Map<String, List<String>> keywordsBySpell = new LinkedHashMap<>();
+    for (Map.Entry<String, YellSpellsConfig.SpellConfig> entry : config.spells.entrySet()) {
+      YellSpellsConfig.SpellConfig spell = entry.getValue();
+      if (spell == null || !spell.enabled || spell.keywords == null) continue;
+      keywordsBySpell.put(entry.getKey(), spell.keywords);
+    }
+    return build(keywordsBySpell, maxDistance);
+  }
+
+  /** Index keyword lists by spell id; spells earlier in iteration order win ties. */
+  static FuzzyKeywordIndex build(Map<String, List<String>> keywordsBySpell, int maxDistance) {
+    List<String> ids = new ArrayList<>();
+    List<String> keywords = new ArrayList<>();
+    List<Integer> owners = new ArrayList<>();
+    for (Map.Entry<String, List<String>> entry : keywordsBySpell.entrySet()) {
+      int owner = ids.size();
+      ids.add(entry.getKey());
+      for (String kw : entry.getValue()) {
+        if (kw == null) continue;
+        String norm = normalize(kw);
+        if (norm.isEmpty()) continue;
+        keywords.add(norm);
+        owners.add(owner);
+      }
+    }
+    return new FuzzyKeywordIndex(ids.toArray(new String[0]), keywords, owners, Math.max(0, maxDistance));
+  }
+
+  /** @return the spell id whose keyword approximately occurs in {@code transcript}, or null */
+  public String match(CharSequence transcript) {
+    if (root == null) return null;
+    String[] words = normalize(transcript).split(" ");
+    int[] rows = new int[2 * (maxLength + 2)];
+    StringBuilder run = new StringBuilder(maxLength);
+    int bestSpell = -1;
+    int bestDistance = Integer.MAX_VALUE;
+    int heardSpell = -1;
+    for (int i = 0; i < words.length; i++) {
+      if (words[i].isEmpty()) continue;
+      run.setLength(0);
+      for (int j = i; j < words.length && j < i + maxWords; j++) {
+        run.append(words[j]);
+        if (run.length() > maxLength) break;
+        String candidate = run.toString();
+
+        // Earliest run that sounds like a multi-word keyword, word for word
+        if (heardSpell < 0 && j > i && !phonetic.isEmpty()) {
+          Sound heard = phonetic.get(wordKeys(words, i, j + 1));
+          if (heard != null && heard.initials().equals(initials(words, i, j + 1))) heardSpell = heard.spell();
+        }
+
+        int limit = allowedDistance(candidate.length());
+        if (limit == 0) continue;
+        int[] found = {-1, limit + 1};
+        search(root, candidate, limit, rows, found);
+        if (found[0] >= 0 && (found[1] < bestDistance || (found[1] == bestDistance && found[0] < bestSpell))) {
+          bestSpell = found[0];
+          bestDistance = found[1];
+        }
+      }
+    }
+    if (bestSpell >= 0) return spellIds[bestSpell];
+    return heardSpell < 0 ? null : spellIds[heardSpell];
+  }
+
+  private static String wordKeys(String[] words, int from, int to) {
+    StringBuilder key = new StringBuilder();
+    for (int k = from; k < to; k++) {
+      if (k > from) key.append(' ');
+      key.append(phoneticKey(words[k]));
+    }
+    return key.toString();
+  }
+
+  private static String initials(String[] words, int from, int to) {
+    char[] first = new char[to - from];
+    for (int k = from; k < to; k++) first[k - from] = words[k].charAt(0);
+    return new String(first);
+  }
+
+  // Short words get no slack: one edit turns "wall" into "ball"
+  private int allowedDistance(int length) {
+    return Math.min(maxDistance, length / 4);
+  }
+
+  // ===== BK-tree =====
+
+  private static void insert(Node node, String word, int spell) {
+    int[] rows = new int[2 * (word.length() + node.word.length() + 2)];
+    while (true) {
+      int d = levenshtein(word, node.word, rows);
+      if (d == 0) return; // duplicate keyword, first spell keeps it
+      if (d >= node.children.length) {
+        Node[] grown = new Node[d + 1];
+        System.arraycopy(node.children, 0, grown, 0, node.children.length);
+        node.children = grown;
+      }
+      Node child = node.children[d];
+      if (child == null) {
+        node.children[d] = new Node(word, spell);
+        return;
+      }
+      node = child;
+      if (rows.length < 2 * (word.length() + node.word.length() + 2)) {
+        rows = new int[2 * (word.length() + node.word.length() + 2)];
+      }
+    }
+  }
+
+  // found = {spell, distance} of the closest keyword within limit
+  private static void search(Node node, String query, int limit, int[] rows, int[] found) {
+    int d = levenshtein(query, node.word, rows);
+    if (d <= limit && (d < found[1] || (d == found[1] && node.spell < found[0]))) {
+      found[0] = node.spell;
+      found[1] = d;
+    }
+    // Triangle inequality: only subtrees at distance d +/- limit from this node can hold a match
+    int lo = Math.max(1, d - limit);
+    int hi = Math.min(node.children.length - 1, d + limit);
+    for (int k = lo; k <= hi; k++) {
+      Node child = node.children[k];
+      if (child != null) search(child, query, limit, rows, found);
+    }
+  }
+
+  private static int levenshtein(String a, String b, int[] rows) {
+    int m = b.length();
+    int prev = 0;
+    int cur = m + 1;
+    for (int j = 0; j <= m; j++) rows[prev + j] = j;
+    for (int i = 1; i <= a.length(); i++) {
+      rows[cur] = i;
+      char ca = a.charAt(i - 1);
+      for (int j = 1; j <= m; j++) {
+        int sub = rows[prev + j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+        rows[cur + j] = Math.min(sub, Math.min(rows[prev + j], rows[cur + j - 1]) + 1);
+      }
+      int t = prev;
+      prev = cur;
+      cur = t;
+    }
+    return rows[prev + m];
+  }
+
+  // ===== Normalization =====
+
+  // Lowercase letters and digits, everything else collapsed to single spaces
+  static String normalize(CharSequence text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    boolean space = true;
+    for (int i = 0; i < text.length(); i++) {
+      char c = Character.toLowerCase(text.charAt(i));
+      if (Character.isLetterOrDigit(c)) {
+        sb.append(c);
+        space = false;
+      } else if (!space) {
+        sb.append(' ');
+        space = true;
+      }
+    }
+    int n = sb.length();
+    if (n > 0 && sb.charAt(n - 1) == ' ') sb.setLength(n - 1);
+    return sb.toString();
+  }
+
+  /**
+   * Simplified Metaphone-style key for English: consonants folded into sound classes,
+   * vowels dropped after the first letter, repeats collapsed. "fireboll" and "fire ball" both give FRBL.
+   */
+  static String phoneticKey(String word) {
+    StringBuilder key = new StringBuilder(word.length());
+    char last = 0;
+    for (int i = 0; i < word.length(); i++) {
+      char c = word.charAt(i);
+      char next = i + 1 < word.length() ? word.charAt(i + 1) : 0;
+      char code;
+      switch (c) {
+        case 'a', 'e', 'i', 'o', 'u', 'y' -> code = i == 0 ? 'A' : 0;
+        case 'b', 'p' -> code = next == 'h' && c == 'p' ? 'F' : 'B';
+        case 'f', 'v' -> code = 'F';
+        case 'c' -> code = next == 'e' || next == 'i' || next == 'y' ? 'S' : next == 'h' ? 'X' : 'K';
+        case 'g', 'k', 'q' -> code = c == 'g' && (next == 'e' || next == 'i') ? 'J' : 'K';
+        case 'j' -> code = 'J';
+        case 's', 'z' -> code = next == 'h' ? 'X' : 'S';
+        case 'x' -> code = 'K';
+        case 'd', 't' -> code = next == 'h' ? '0' : 'T';
+        case 'l' -> code = 'L';
+        case 'm', 'n' -> code = 'M';
+        case 'r' -> code = 'R';
+        case 'w' -> code = 'W';
+        case 'h' -> code = 0; // mostly silent or folded into the previous consonant
+        default -> code = Character.isDigit(c) ? c : 0;
+      }
+      if (code != 0 && code != last) key.append(code);
+      if (code != 0) last = code;
+      else if (c != 'h') last = 0; // a vowel separates repeated consonants
+    }
+    return key.toString();
+  }
+}
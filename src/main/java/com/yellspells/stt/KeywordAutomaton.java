@@ -0,0 +1,205 @@
+package com.yellspells.stt;
+
+import com.yellspells.config.YellSpellsConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * All enabled spell keywords compiled into one case-insensitive Aho-Corasick DFA.
+ * Matching is a single pass over the transcript with one table lookup per character, independent
+ * of how many spells and aliases are configured. Immutable and stateless, so it can be shared
+ * between threads. Every decode may revise earlier words, so each transcript is scanned whole.
+ */
+public final class KeywordAutomaton {
+
+  private static final int NONE = -1;
+
+  private final String[] spellIds;
+  private final float[] thresholds;
+
+  // Character classes: 0 = a character no keyword contains
+  private final int[] asciiClass = new int[128];
+  private final char[] otherChars;   // sorted non-ASCII keyword characters
+  private final int[] otherClasses;
+  private final int alphabet;
+
+  // Dense DFA: next state = delta[state * alphabet + class]
+  private final int[] delta;
+  // Spells with a keyword ending exactly at this state (several if aliases collide); lowest such
+  // spell anywhere on the suffix chain; next state on the suffix chain that ends a keyword
+  private final int[][] ownOutput;
+  private final int[] output;
+  private final int[] dictLink;
+
+  private KeywordAutomaton(String[] spellIds, float[] thresholds, List<String> keywords, List<Integer> owners) {
+    this.spellIds = spellIds;
+    this.thresholds = thresholds;
+
+    // Alphabet
+    StringBuilder others = new StringBuilder();
+    int classes = 1;
+    for (String kw : keywords) {
+      for (int i = 0; i < kw.length(); i++) {
+        char c = kw.charAt(i);
+        if (c < 128) {
+          if (asciiClass[c] == 0) asciiClass[c] = classes++;
+        } else if (others.indexOf(String.valueOf(c)) < 0) {
+          others.append(c);
+        }
+      }
+    }
+    otherChars = others.toString().toCharArray();
+    Arrays.sort(otherChars);
+    otherClasses = new int[otherChars.length];
+    for (int i = 0; i < otherChars.length; i++) otherClasses[i] = classes++;
+    alphabet = classes;
+
+    // Trie
+    int maxStates = 1;
+    for (String kw : keywords) maxStates += kw.length();
+    int[] trie = new int[maxStates * alphabet];
+    Arrays.fill(trie, NONE);
+    int[] out = new int[maxStates];
+    Arrays.fill(out, NONE);
+    int[][] own = new int[maxStates][];
+    int states = 1;
+    for (int k = 0; k < keywords.size(); k++) {
+      String kw = keywords.get(k);
+      int s = 0;
+      for (int i = 0; i < kw.length(); i++) {
+        int idx = s * alphabet + classOf(kw.charAt(i));
+        if (trie[idx] == NONE) trie[idx] = states++;
+        s = trie[idx];
+      }
+      int owner = owners.get(k);
+      if (out[s] == NONE || owner < out[s]) out[s] = owner;
+      if (own[s] == null) {
+        own[s] = new int[] {owner};
+      } else if (Arrays.stream(own[s]).noneMatch(o -> o == owner)) {
+        own[s] = Arrays.copyOf(own[s], own[s].length + 1);
+        own[s][own[s].length - 1] = owner;
+      }
+    }
+
+    // Failure links by BFS, folded into the trie to make it a complete DFA
+    int[] fail = new int[states];
+    int[] dict = new int[states];
+    Arrays.fill(dict, NONE);
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < alphabet; c++) {
+      int t = trie[c];
+      if (t == NONE) {
+        trie[c] = 0;
+      } else {
+        fail[t] = 0;
+        queue.add(t);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int s = queue.poll();
+      int f = fail[s];
+      dict[s] = out[f] != NONE ? f : dict[f];
+      for (int c = 0; c < alphabet; c++) {
+        int idx = s * alphabet + c;
+        int t = trie[idx];
+        if (t == NONE) {
+          trie[idx] = trie[f * alphabet + c];
+        } else {
+          fail[t] = trie[f * alphabet + c];
+          queue.add(t);
+        }
+      }
+    }
+    // Each state reports the best output anywhere on its suffix chain
+    this.ownOutput = Arrays.copyOf(own, states);
+    for (int s = 0; s < states; s++) {
+      for (int d = dict[s]; d != NONE; d = dict[d]) {
+        if (out[s] == NONE || out[d] < out[s]) out[s] = out[d];
+      }
+    }
+
+    this.delta = Arrays.copyOf(trie, states * alphabet);
+    this.output = Arrays.copyOf(out, states);
+    this.dictLink = dict;
+  }
+
+  /** Compile the enabled spells of {@code config}; spell order follows the config map. */
+  public static KeywordAutomaton build(YellSpellsConfig config) {
+    List<String> ids = new ArrayList<>();
+    List<Float> thresholds = new ArrayList<>();
+    List<String> keywords = new ArrayList<>();
+    List<Integer> owners = new ArrayList<>();
+    for (Map.Entry<String, YellSpellsConfig.SpellConfig> entry : config.spells.entrySet()) {
+      YellSpellsConfig.SpellConfig spell = entry.getValue();
+      if (spell == null || !spell.enabled || spell.keywords == null) continue;
+      int owner = ids.size();
+      ids.add(entry.getKey());
+      thresholds.add(spell.confidenceThreshold);
+      for (String kw : spell.keywords) {
+        if (kw == null || kw.isEmpty()) continue;
+        keywords.add(kw.toLowerCase(Locale.ROOT));
+        owners.add(owner);
+      }
+    }
+    float[] t = new float[thresholds.size()];
+    for (int i = 0; i < t.length; i++) t[i] = thresholds.get(i);
+    return new KeywordAutomaton(ids.toArray(new String[0]), t, keywords, owners);
+  }
+
+  public int spellCount() { return spellIds.length; }
+
+  public String spellId(int spell) { return spellIds[spell]; }
+
+  public float confidenceThreshold(int spell) { return thresholds[spell]; }
+
+  public int states() { return output.length; }
+
+  /**
+   * @return index of the first spell (by end position, then config order) whose keyword occurs in
+   *         {@code text}, or -1
+   */
+  public int firstMatch(CharSequence text) {
+    int s = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      s = step(s, text.charAt(i));
+      if (output[s] != NONE) return output[s];
+    }
+    return NONE;
+  }
+
+  /** @return id of the spell {@link #firstMatch} finds in {@code text}, or null */
+  public String match(CharSequence text) {
+    int spell = firstMatch(text);
+    return spell == NONE ? null : spellIds[spell];
+  }
+
+  /** Mark every spell whose keyword occurs in {@code text} in {@code matched} (indexed by spell). */
+  public void allMatches(CharSequence text, boolean[] matched) {
+    int s = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      s = step(s, text.charAt(i));
+      if (output[s] == NONE) continue;
+      if (ownOutput[s] != null) mark(ownOutput[s], matched);
+      for (int d = dictLink[s]; d != NONE; d = dictLink[d]) mark(ownOutput[d], matched);
+    }
+  }
+
+  private static void mark(int[] spells, boolean[] matched) {
+    for (int spell : spells) matched[spell] = true;
+  }
+
+  private int step(int state, char c) {
+    return delta[state * alphabet + classOf(Character.toLowerCase(c))];
+  }
+
+  private int classOf(char c) {
+    if (c < 128) return asciiClass[c];
+    int i = Arrays.binarySearch(otherChars, c);
+    return i < 0 ? 0 : otherClasses[i];
+  }
+}
@@ -0,0 +1,139 @@
+package com.yellspells.stt;
+
+import com.yellspells.YellSpellsMod;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * Persistent home for the native libraries bundled in the jar, so they are not copied to a new temp
+ * file on every launch. Each library is stored as {@code <cache>/<sha256 prefix>/<file name>} under
+ * {@code yellspells/natives/v1/<os>-<arch>} in the game directory, keyed by the hash of the bundled
+ * bytes: an unchanged library is found and loaded in place, and a mod update simply lands in a new
+ * directory. Older versions of a library are deleted once the new one is in place.
+ *
+ * <p>Extraction writes to a temp file in the cache and renames it, under a file lock, so game
+ * instances starting at the same time never load a half-written library and a crash mid-copy leaves
+ * nothing behind under a final name.
+ */
+final class NativeLibraryCache {
+
+  // Bump when the layout changes; older layouts are then ignored
+  private static final String LAYOUT_VERSION = "v1";
+  private static final int HASH_CHARS = 16;
+
+  private final Path dir;
+
+  NativeLibraryCache() {
+    this(FabricLoader.getInstance().getGameDir().resolve("yellspells").resolve("natives").resolve(LAYOUT_VERSION)
+        .resolve(System.getProperty("os.name").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "")
+            + "-" + System.getProperty("os.arch").toLowerCase(Locale.ROOT)));
+  }
+
+  NativeLibraryCache(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Cached copy of the bundled {@code resource}, extracted first if it is missing or differs.
+   * @return the file to pass to {@link System#load}, or null if the jar does not contain {@code resource}
+   */
+  Path get(String resource) throws IOException {
+    String fileName = resource.substring(resource.lastIndexOf('/') + 1);
+    byte[] bytes;
+    try (InputStream in = NativeLibraryCache.class.getResourceAsStream(resource)) {
+      if (in == null) return null;
+      bytes = in.readAllBytes();
+    }
+    String hash = HexFormat.of().formatHex(sha256().digest(bytes)).substring(0, HASH_CHARS);
+    Path file = dir.resolve(hash).resolve(fileName);
+
+    // Only this JVM's threads are kept out by the monitor; other game instances by the file lock
+    synchronized (NativeLibraryCache.class) {
+      Files.createDirectories(dir);
+      try (FileChannel lockFile = FileChannel.open(dir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+           FileLock lock = lockFile.lock()) {
+        if (matches(file, bytes.length, hash)) {
+          YellSpellsMod.LOGGER.debug("Native library {} is cached at {}", fileName, file);
+        } else {
+          extract(bytes, file);
+          YellSpellsMod.LOGGER.info("Extracted native library {} to {}", fileName, file);
+        }
+        pruneOtherVersions(fileName, hash);
+      }
+    }
+    return file;
+  }
+
+  // Same size and hash as the bundled library; guards against a cache file altered after extraction
+  private static boolean matches(Path file, long size, String hash) {
+    try {
+      if (!Files.isRegularFile(file) || Files.size(file) != size) return false;
+      MessageDigest sha = sha256();
+      try (InputStream in = new DigestInputStream(Files.newInputStream(file), sha)) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      return HexFormat.of().formatHex(sha.digest()).startsWith(hash);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void extract(byte[] bytes, Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tmp, bytes);
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  // Best effort: a copy still loaded by another running instance (Windows) stays until next time
+  private void pruneOtherVersions(String fileName, String keepHash) {
+    try (DirectoryStream<Path> versions = Files.newDirectoryStream(dir, Files::isDirectory)) {
+      for (Path version : versions) {
+        if (version.getFileName().toString().equals(keepHash)) continue;
+        Path old = version.resolve(fileName);
+        try {
+          if (Files.deleteIfExists(old)) YellSpellsMod.LOGGER.debug("Deleted old native library {}", old);
+          try (DirectoryStream<Path> left = Files.newDirectoryStream(version)) {
+            if (!left.iterator().hasNext()) Files.delete(version);
+          }
+        } catch (IOException e) {
+          YellSpellsMod.LOGGER.debug("Could not delete old native library {}: {}", old, e.getMessage());
+        }
+      }
+    } catch (IOException e) {
+      YellSpellsMod.LOGGER.debug("Could not list native library cache {}: {}", dir, e.getMessage());
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JRE has SHA-256
+    }
+  }
+}
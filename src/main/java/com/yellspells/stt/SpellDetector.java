@@ -0,0 +1,143 @@
+package com.yellspells.stt;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.config.YellSpellsConfig;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SpellDetector {
+    // Keyword matchers for the current config; rebuilt when the config revision changes
+    private static volatile KeywordAutomaton automaton;
+    private static volatile FuzzyKeywordIndex fuzzyIndex;
+    private static volatile int compiledRevision = -1;
+    
+    private final Map<String, SpellDetectionHistory> detectionHistory = new HashMap<>();
+    private final int stabilityThreshold;
+    private final float confidenceThreshold;
+    private boolean[] matched = new boolean[0];
+    
+    public SpellDetector() {
+        this.stabilityThreshold = YellSpellsMod.getConfig().stabilityThreshold;
+        this.confidenceThreshold = YellSpellsMod.getConfig().confidenceThreshold;
+    }
+    
+    /** The compiled keyword automaton, rebuilt on first use after a config (re)load. */
+    public static KeywordAutomaton automaton() {
+        compile();
+        return automaton;
+    }
+    
+    /** The fuzzy/phonetic keyword index, rebuilt on first use after a config (re)load. */
+    public static FuzzyKeywordIndex fuzzyIndex() {
+        compile();
+        return fuzzyIndex;
+    }
+    
+    private static void compile() {
+        YellSpellsConfig config = YellSpellsMod.getConfig();
+        if (compiledRevision == config.getRevision()) {
+            return;
+        }
+        synchronized (SpellDetector.class) {
+            int revision = config.getRevision();
+            if (compiledRevision != revision) {
+                automaton = KeywordAutomaton.build(config);
+                fuzzyIndex = FuzzyKeywordIndex.build(config, config.fuzzyMaxDistance);
+                compiledRevision = revision;
+                YellSpellsMod.LOGGER.info("Compiled {} spells into a {}-state keyword automaton",
+                    automaton.spellCount(), automaton.states());
+            }
+        }
+    }
+    
+    public SpellDetectionResult detectSpell(CharSequence transcript, float confidence) {
+        KeywordAutomaton ac = automaton();
+        if (matched.length != ac.spellCount()) {
+            matched = new boolean[ac.spellCount()];
+        } else {
+            Arrays.fill(matched, false);
+        }
+        ac.allMatches(transcript, matched);
+        
+        // Check matched spells in config order
+        for (int spell = 0; spell < matched.length; spell++) {
+            if (!matched[spell]) continue;
+            
+            // Check confidence threshold
+            if (confidence >= ac.confidenceThreshold(spell)) {
+                // Update detection history
+                SpellDetectionHistory history = detectionHistory.computeIfAbsent(
+                    ac.spellId(spell), k -> new SpellDetectionHistory());
+                
+                history.addDetection(confidence);
+                
+                // Check if stable
+                return new SpellDetectionResult(ac.spellId(spell), confidence, history.isStable(stabilityThreshold));
+            }
+        }
+        
+        return null;
+    }
+    
+    // Static method for backward compatibility
+    public static String detectKeyword(CharSequence transcript) {
+        // Simple keyword detection - just check if any spell keyword is present
+        if (transcript == null || transcript.length() == 0) {
+            return null;
+        }
+        
+        KeywordAutomaton ac = automaton();
+        int spell = ac.firstMatch(transcript);
+        if (spell >= 0) {
+            return ac.spellId(spell);
+        }
+        return YellSpellsMod.getConfig().fuzzyMatching ? fuzzyIndex().match(transcript) : null;
+    }
+    
+    private static class SpellDetectionHistory {
+        private final float[] recentConfidences = new float[10];
+        private int index = 0;
+        private int count = 0;
+        
+        public void addDetection(float confidence) {
+            recentConfidences[index] = confidence;
+            index = (index + 1) % recentConfidences.length;
+            count = Math.min(count + 1, recentConfidences.length);
+        }
+        
+        public boolean isStable(int threshold) {
+            if (count < threshold) return false;
+            
+            // Check if we have enough consecutive detections
+            int consecutive = 0;
+            for (int i = 0; i < count; i++) {
+                int idx = (index - 1 - i + recentConfidences.length) % recentConfidences.length;
+                if (recentConfidences[idx] > 0) {
+                    consecutive++;
+                } else {
+                    break;
+                }
+            }
+            
+            return consecutive >= threshold;
+        }
+    }
+    
+    public static class SpellDetectionResult {
+        private final String spellId;
+        private final float confidence;
+        private final boolean stable;
+        
+        public SpellDetectionResult(String spellId, float confidence, boolean stable) {
+            this.spellId = spellId;
+            this.confidence = confidence;
+            this.stable = stable;
+        }
+        
+        public String getSpellId() { return spellId; }
+        public float getConfidence() { return confidence; }
+        public boolean isStable() { return stable; }
+    }
+}
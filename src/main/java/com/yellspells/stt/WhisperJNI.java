@@ -0,0 +1,349 @@
+package com.yellspells.stt;
+
+import com.yellspells.YellSpellsMod;
+import com.yellspells.config.YellSpellsConfig;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class WhisperJNI {
+
+  // null until the first context is created: loading is deferred until voice recognition is actually used
+  private static volatile Boolean loadResult;
+
+  /** Load the native library on first use; later calls return the first result. */
+  private static boolean nativeLibraryLoaded() {
+    Boolean loaded = loadResult;
+    if (loaded != null) return loaded;
+    synchronized (WhisperJNI.class) {
+      if (loadResult == null) {
+        long start = System.nanoTime();
+        try {
+          loadNativeLibrary();
+          loadResult = true;
+          YellSpellsMod.LOGGER.info("Native Whisper library loaded in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (Throwable t) {
+          loadResult = false;
+          YellSpellsMod.LOGGER.warn("Native Whisper library not found: {}, using mock implementation for testing", t.getMessage());
+        }
+      }
+      return loadResult;
+    }
+  }
+  
+  private static void loadNativeLibrary() {
+    String osName = System.getProperty("os.name").toLowerCase();
+    String libPath;
+    
+    if (osName.contains("win")) {
+      libPath = "/natives/windows/yellspells_whisper.dll";
+    } else if (osName.contains("mac")) {
+      libPath = "/natives/macos/yellspells_whisper.dylib";
+    } else {
+      libPath = "/natives/linux/yellspells_whisper.so";
+    }
+    
+    NativeLibraryCache cache = new NativeLibraryCache();
+    try {
+      // On macOS, we need to load all dependencies first
+      if (osName.contains("mac")) {
+        loadMacOSDependencies(cache);
+      }
+      
+      // Bundled library, extracted once per version into the cache
+      Path lib = cache.get(libPath);
+      if (lib != null) {
+        System.load(lib.toAbsolutePath().toString());
+        return;
+      }
+    } catch (Exception e) {
+      YellSpellsMod.LOGGER.debug("Failed to load bundled library: {}", e.getMessage());
+    }
+    
+    // Fall back to system library loading
+    System.loadLibrary("yellspells_whisper");
+  }
+  
+  private static void loadMacOSDependencies(NativeLibraryCache cache) {
+    try {
+      // Load all required dependencies in the correct order
+      String[] deps = {
+        "/natives/macos/libggml-base.dylib",
+        "/natives/macos/libggml-blas.dylib", 
+        "/natives/macos/libggml-cpu.dylib",
+        "/natives/macos/libggml-metal.dylib",
+        "/natives/macos/libggml.dylib",
+        "/natives/macos/libwhisper.1.7.6.dylib"
+      };
+      
+      for (String dep : deps) {
+        Path lib = cache.get(dep);
+        if (lib != null) {
+          System.load(lib.toAbsolutePath().toString());
+          YellSpellsMod.LOGGER.debug("Loaded dependency: {}", lib.getFileName());
+        } else {
+          YellSpellsMod.LOGGER.warn("Could not find dependency: {}", dep);
+        }
+      }
+    } catch (Exception e) {
+      YellSpellsMod.LOGGER.error("Failed to load macOS dependencies", e);
+    }
+  }
+
+  /**
+   * One native context plus a reference count: the owner holds one reference until {@link #close},
+   * and every native call holds another for its duration, so the context is only freed once the
+   * last in-flight call has returned.
+   */
+  private static final class Handle {
+    final long ptr;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    Handle(long ptr) { this.ptr = ptr; }
+
+    boolean retain() {
+      while (true) {
+        int r = refs.get();
+        if (r <= 0) return false;
+        if (refs.compareAndSet(r, r + 1)) return true;
+      }
+    }
+
+    void release() {
+      if (refs.decrementAndGet() == 0) {
+        nativeClose(ptr);
+      }
+    }
+  }
+
+  /**
+   * Extra decoding state sharing this context's loaded model, so several decodes can run in
+   * parallel (one per state). A state must only be used by one thread at a time; it keeps the
+   * context alive until it is closed.
+   */
+  public final class State implements AutoCloseable {
+    private final Handle handle;
+    private final long ptr;
+    private boolean closed = false;
+
+    private State(Handle handle, long ptr) {
+      this.handle = handle;
+      this.ptr = ptr;
+    }
+
+    // as decode(FloatBuffer, int, int, ByteBuffer, float[]), on this state
+    public int decode(FloatBuffer buf, int samples, int audioCtx, ByteBuffer outUtf8, float[] confidenceStable) {
+      if (closed) return 0;
+      return nativeDecodeState(handle.ptr, ptr, buf, samples, audioCtx, outUtf8, confidenceStable);
+    }
+
+    @Override
+    public void close() {
+      if (closed) return;
+      closed = true;
+      nativeFreeState(ptr);
+      handle.release();
+    }
+  }
+
+  private volatile Handle handle;
+  private volatile boolean decodeSupported = true;
+  private volatile boolean audioCtxSupported = true;
+  private volatile boolean configureSupported = true;
+  private volatile boolean statesSupported = true;
+
+  public boolean available() { 
+    return handle != null; // only ever set once the library is loaded
+  }
+  
+  /** True if the native library cannot be loaded; loads it if that has not been tried yet. */
+  public boolean isUsingMock() {
+    return !nativeLibraryLoaded();
+  }
+
+  /** True unless the native library turned out to lack nativeDecode (then only push/poll work). */
+  public boolean decodeSupported() {
+    return decodeSupported;
+  }
+
+  public void init(String modelPath, int sampleRate, int threads) {
+    if (nativeLibraryLoaded()) {
+      long ptr;
+      try {
+        ptr = nativeInit(modelPath, sampleRate, threads);
+      } catch (UnsatisfiedLinkError e) {
+        // JNI names follow this class's package; a library built before it moved has none of them
+        throw new RuntimeException("Native Whisper library does not match this version; rebuild it from src/main/native", e);
+      }
+      Handle previous = handle;
+      handle = ptr == 0 ? null : new Handle(ptr);
+      if (previous != null) previous.release();
+      YellSpellsMod.LOGGER.info("Native Whisper: Initialized with model: {}", modelPath);
+    } else {
+      throw new RuntimeException("Native Whisper library not loaded");
+    }
+  }
+
+  // Current context with a reference taken for the caller, or null if there is none
+  private Handle acquire() {
+    Handle h = handle;
+    return h != null && h.retain() ? h : null;
+  }
+
+  // push audio (float -1..1). buf must be a direct buffer; reuse it.
+  public int push(FloatBuffer buf, int samples) {
+    Handle h = acquire();
+    if (h == null) return -1;
+    try {
+      return nativePush(h.ptr, buf, samples);
+    } finally {
+      h.release();
+    }
+  }
+
+  // poll one partial; out must be a direct UTF-8 buffer you reuse; returns bytes written or 0 if none
+  public int poll(ByteBuffer outUtf8, float[] confidenceStable) {
+    Handle h = acquire();
+    if (h == null) return 0;
+    try {
+      return nativePoll(h.ptr, outUtf8, confidenceStable);
+    } finally {
+      h.release();
+    }
+  }
+
+  // Encoder frames per second of audio (whisper's full 30 s context is 1500 frames)
+  private static final int ENCODER_FRAMES_PER_SECOND = 50;
+  private static final int MAX_AUDIO_CTX = 1500;
+  // nativeDecode pads shorter input to 1.1 s
+  private static final int MIN_DECODE_SAMPLES = 17600;
+
+  /**
+   * Encoder context for {@code samples} of 16 kHz audio: the frames the (padded) input actually
+   * covers, rounded up to a multiple of 64, plus 64 frames (~1.3 s) of slack so words cut at the
+   * end are still attended to. Whisper is trained on 30 s windows; much less slack than this
+   * starts to hurt accuracy.
+   */
+  public static int audioContextFor(int samples) {
+    long padded = Math.max(samples, MIN_DECODE_SAMPLES);
+    int frames = (int) ((padded * ENCODER_FRAMES_PER_SECOND + 15999) / 16000);
+    return Math.min(MAX_AUDIO_CTX, ((frames + 63) & ~63) + 64);
+  }
+
+  // one-shot decode of exactly {samples} (e.g. a whole utterance) on the context's own state;
+  // independent of push/poll state. Same buffer rules as push/poll; returns bytes written,
+  // 0 if nothing was recognized, or -1 if the loaded native library predates nativeDecode
+  // (use push/poll instead). Not safe to call from two threads at once; use a State for that.
+  public int decode(FloatBuffer buf, int samples, ByteBuffer outUtf8, float[] confidenceStable) {
+    return decode(buf, samples, 0, outUtf8, confidenceStable);
+  }
+
+  // as above, with the encoder limited to {audioCtx} frames (see audioContextFor); 0 = full 30 s context
+  public int decode(FloatBuffer buf, int samples, int audioCtx, ByteBuffer outUtf8, float[] confidenceStable) {
+    if (!decodeSupported) return handle != null ? -1 : 0;
+    Handle h = acquire();
+    if (h == null) return 0;
+    try {
+      if (audioCtx > 0 && audioCtxSupported) {
+        try {
+          return nativeDecodeCtx(h.ptr, buf, samples, audioCtx, outUtf8, confidenceStable);
+        } catch (UnsatisfiedLinkError e) {
+          audioCtxSupported = false;
+          YellSpellsMod.LOGGER.warn("Native Whisper library has no nativeDecodeCtx; decoding with the full 30 s encoder context");
+        }
+      }
+      try {
+        return nativeDecode(h.ptr, buf, samples, outUtf8, confidenceStable);
+      } catch (UnsatisfiedLinkError e) {
+        decodeSupported = false;
+        YellSpellsMod.LOGGER.warn("Native Whisper library has no nativeDecode; rebuild natives for utterance decoding");
+        return -1;
+      }
+    } finally {
+      h.release();
+    }
+  }
+
+  /**
+   * Create an extra decoding state on the current context.
+   * @return the state, or null if there is no context or the native library cannot create states
+   */
+  public State createState(int threads) {
+    if (!statesSupported) return null;
+    Handle h = acquire();
+    if (h == null) return null;
+    long ptr;
+    try {
+      ptr = nativeCreateState(h.ptr, threads);
+    } catch (UnsatisfiedLinkError e) {
+      statesSupported = false;
+      YellSpellsMod.LOGGER.warn("Native Whisper library has no nativeCreateState; decoding on a single context");
+      ptr = 0;
+    }
+    if (ptr == 0) {
+      h.release();
+      return null;
+    }
+    // The reference taken above now belongs to the state
+    return new State(h, ptr);
+  }
+
+  // decoding options for all later push/poll/decode calls: an initial prompt to bias the vocabulary
+  // (null for none), a cap on generated tokens (0 = unlimited), single-segment output, and words that
+  // end decoding as soon as they have been emitted (null for none). Applies to every State too and
+  // may be called while they are decoding; running decodes finish with the previous options.
+  // Returns false if the loaded native library predates nativeConfigure (options are then ignored)
+  public boolean configure(String prompt, int maxTokens, boolean singleSegment, String[] stopWords) {
+    if (!configureSupported) return false;
+    Handle h = acquire();
+    if (h == null) return false;
+    try {
+      nativeConfigure(h.ptr, prompt, maxTokens, singleSegment, stopWords);
+      return true;
+    } catch (UnsatisfiedLinkError e) {
+      configureSupported = false;
+      YellSpellsMod.LOGGER.warn("Native Whisper library has no nativeConfigure; rebuild natives for keyword-biased decoding");
+      return false;
+    } finally {
+      h.release();
+    }
+  }
+
+  /**
+   * Bias decoding toward the enabled spells of {@code cfg}: their keywords become the initial prompt
+   * and stop words (as enabled), and output is capped at roughly maxPartialLength characters.
+   * @return number of spell keywords, or -1 if the native library predates nativeConfigure
+   */
+  public int configureForSpells(YellSpellsConfig cfg) {
+    List<String> keywords = new ArrayList<>();
+    for (YellSpellsConfig.SpellConfig spell : cfg.spells.values()) {
+      if (spell != null && spell.enabled && spell.keywords != null) keywords.addAll(spell.keywords);
+    }
+    String prompt = cfg.keywordPrompt && !keywords.isEmpty() ? String.join(", ", keywords) + "." : null;
+    // ~4 characters per English BPE token, plus room for leading punctuation/space tokens
+    int maxTokens = cfg.maxPartialLength > 0 ? cfg.maxPartialLength / 4 + 2 : 0;
+    String[] stopWords = cfg.earlyStopOnKeyword ? keywords.toArray(new String[0]) : null;
+    return configure(prompt, maxTokens, true, stopWords) ? keywords.size() : -1;
+  }
+
+  // Drops the owner's reference; the context is freed once in-flight calls and open States are done
+  public void close() {
+    Handle h = handle;
+    handle = null;
+    if (h != null) h.release();
+  }
+
+  private static native long nativeInit(String modelPath, int sr, int threads);
+  private static native int  nativePush(long ctx, FloatBuffer buf, int samples);
+  private static native int  nativePoll(long ctx, ByteBuffer outUtf8, float[] confAndStable);
+  private static native int  nativeDecode(long ctx, FloatBuffer buf, int samples, ByteBuffer outUtf8, float[] confAndStable);
+  private static native int  nativeDecodeCtx(long ctx, FloatBuffer buf, int samples, int audioCtx, ByteBuffer outUtf8, float[] confAndStable);
+  private static native int  nativeDecodeState(long ctx, long state, FloatBuffer buf, int samples, int audioCtx, ByteBuffer outUtf8, float[] confAndStable);
+  private static native long nativeCreateState(long ctx, int threads);
+  private static native void nativeFreeState(long state);
+  private static native void nativeConfigure(long ctx, String prompt, int maxTokens, boolean singleSegment, String[] stopWords);
+  private static native void nativeClose(long ctx);
+}
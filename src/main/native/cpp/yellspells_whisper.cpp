@@ -3,17 +3,55 @@
 #include <memory>
 #include <vector>
 #include <cstring>
+#include <cctype>
+#include <cmath>
 #include <whisper.h>
 
+#if !defined(_WIN32)
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
+
 // JNI function implementations for YellSpells Whisper integration
 
+// Decoding options set by nativeConfigure. Immutable once published; decodes on other threads keep
+// using the snapshot they started with.
+struct DecodeOptions {
+    std::string initial_prompt;
+    int max_tokens = 0;          // 0 = unlimited
+    bool single_segment = true;
+    std::vector<std::string> stop_words; // lowercase; decoding ends once one has been emitted
+};
+
+// Everything one decode mutates. The context owns one for its built-in state (push/poll/decode);
+// nativeCreateState makes more, each with its own whisper_state, so decodes can run in parallel
+// against the same loaded model.
+struct DecodeScratch {
+    whisper_state* state = nullptr; // null: the context's built-in state
+    int n_threads = 4;
+    std::vector<float> decode_buffer; // padding scratch for short utterances
+    std::string last_result;
+    std::string emitted;              // scratch for the early-stop check
+    const DecodeOptions* options = nullptr;
+    
+    ~DecodeScratch() {
+        if (state) {
+            whisper_free_state(state);
+        }
+    }
+};
+
 struct WhisperContext {
     whisper_context* ctx;
     std::vector<float> audio_buffer;
-    std::string last_result;
+    DecodeScratch scratch;
+    std::shared_ptr<const DecodeOptions> options = std::make_shared<DecodeOptions>();
     
-    WhisperContext(whisper_context* c) : ctx(c) {
+    WhisperContext(whisper_context* c, int threads) : ctx(c) {
         audio_buffer.reserve(32000); // Reserve space for ~2 seconds at 16kHz
+        scratch.n_threads = threads > 0 ? threads : 4;
     }
     
     ~WhisperContext() {
@@ -23,15 +61,80 @@ struct WhisperContext {
     }
 };
 
+#if !defined(_WIN32)
+// Model file mapped read-only and handed to whisper's loader from memory. The kernel is told the
+// whole file is about to be read front to back, so it reads ahead in large chunks (and the pages
+// stay cached for the next init) instead of whisper pulling it in through small buffered reads.
+struct MappedModel {
+    const char* data;
+    size_t size;
+    size_t pos = 0;
+};
+
+static size_t mapped_read(void* ctx, void* output, size_t read_size) {
+    MappedModel* m = static_cast<MappedModel*>(ctx);
+    size_t n = read_size < m->size - m->pos ? read_size : m->size - m->pos;
+    std::memcpy(output, m->data + m->pos, n);
+    m->pos += n;
+    return n;
+}
+
+static bool mapped_eof(void* ctx) {
+    MappedModel* m = static_cast<MappedModel*>(ctx);
+    return m->pos >= m->size;
+}
+
+// whisper calls this once loading is done, successful or not
+static void mapped_close(void* ctx) {
+    MappedModel* m = static_cast<MappedModel*>(ctx);
+    munmap(const_cast<char*>(m->data), m->size);
+    delete m;
+}
+
+// Returns null if the file cannot be mapped (caller falls back to whisper's own file loader)
+// or whisper rejects the model; *mapped tells the two apart.
+static whisper_context* init_from_mapping(const char* path, whisper_context_params params, bool* mapped) {
+    *mapped = false;
+    int fd = open(path, O_RDONLY);
+    if (fd < 0) return nullptr;
+    struct stat st;
+    if (fstat(fd, &st) != 0 || st.st_size <= 0) {
+        close(fd);
+        return nullptr;
+    }
+    size_t size = static_cast<size_t>(st.st_size);
+    void* addr = mmap(nullptr, size, PROT_READ, MAP_PRIVATE, fd, 0);
+    close(fd);
+    if (addr == MAP_FAILED) return nullptr;
+    madvise(addr, size, MADV_SEQUENTIAL);
+    madvise(addr, size, MADV_WILLNEED);
+    *mapped = true;
+
+    whisper_model_loader loader;
+    loader.context = new MappedModel{static_cast<const char*>(addr), size};
+    loader.read = mapped_read;
+    loader.eof = mapped_eof;
+    loader.close = mapped_close;
+    return whisper_init_with_params(&loader, params);
+}
+#endif
+
 extern "C" {
 
 JNIEXPORT jlong JNICALL
-Java_com_yellspells_client_stt_WhisperJNI_nativeInit(JNIEnv* env, jclass clazz, jstring modelPath, jint sampleRate, jint threads) {
+Java_com_yellspells_stt_WhisperJNI_nativeInit(JNIEnv* env, jclass clazz, jstring modelPath, jint sampleRate, jint threads) {
     const char* path = env->GetStringUTFChars(modelPath, nullptr);
     
     // Initialize whisper context with new API
     whisper_context_params ctx_params = whisper_context_default_params();
-    whisper_context* ctx = whisper_init_from_file_with_params(path, ctx_params);
+    whisper_context* ctx = nullptr;
+    bool mapped = false;
+#if !defined(_WIN32)
+    ctx = init_from_mapping(path, ctx_params, &mapped);
+#endif
+    if (!mapped) {
+        ctx = whisper_init_from_file_with_params(path, ctx_params);
+    }
     env->ReleaseStringUTFChars(modelPath, path);
     
     if (!ctx) {
@@ -39,12 +142,12 @@ Java_com_yellspells_client_stt_WhisperJNI_nativeInit(JNIEnv* env, jclass clazz,
     }
     
     // Create our wrapper context
-    WhisperContext* wrapper = new WhisperContext(ctx);
+    WhisperContext* wrapper = new WhisperContext(ctx, threads);
     return reinterpret_cast<jlong>(wrapper);
 }
 
 JNIEXPORT jint JNICALL
-Java_com_yellspells_client_stt_WhisperJNI_nativePush(JNIEnv* env, jclass clazz, jlong contextPtr, jobject audioBuffer, jint samples) {
+Java_com_yellspells_stt_WhisperJNI_nativePush(JNIEnv* env, jclass clazz, jlong contextPtr, jobject audioBuffer, jint samples) {
     if (contextPtr == 0) return -1;
     
     WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
@@ -59,49 +162,97 @@ Java_com_yellspells_client_stt_WhisperJNI_nativePush(JNIEnv* env, jclass clazz,
     return 0; // Success
 }
 
-JNIEXPORT jint JNICALL
-Java_com_yellspells_client_stt_WhisperJNI_nativePoll(JNIEnv* env, jclass clazz, jlong contextPtr, jobject outBuffer, jfloatArray confStable) {
-    if (contextPtr == 0) return 0;
-    
-    WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
-    
-    // Check if we have enough audio (at least 1 second at 16kHz)
-    if (wrapper->audio_buffer.size() < 16000) {
-        return 0; // Not enough audio yet
+static void append_lower(std::string& dst, const char* text) {
+    for (const char* p = text; *p; ++p) {
+        dst.push_back(static_cast<char>(std::tolower(static_cast<unsigned char>(*p))));
+    }
+}
+
+// Called before each token is sampled: once the text so far contains a stop word, only
+// end-of-text stays possible, so whisper finishes the segment instead of decoding further tokens.
+static void stop_on_keyword(whisper_context* ctx, whisper_state* /*state*/, const whisper_token_data* tokens,
+                            int n_tokens, float* logits, void* user_data) {
+    DecodeScratch* scratch = static_cast<DecodeScratch*>(user_data);
+    if (n_tokens == 0) return;
+    const whisper_token eot = whisper_token_eot(ctx);
+    scratch->emitted.clear();
+    for (int i = 0; i < n_tokens; ++i) {
+        if (tokens[i].id >= eot) continue; // timestamps and other special tokens
+        append_lower(scratch->emitted, whisper_token_to_str(ctx, tokens[i].id));
+    }
+    for (const std::string& word : scratch->options->stop_words) {
+        if (scratch->emitted.find(word) != std::string::npos) {
+            const int n_vocab = whisper_n_vocab(ctx);
+            for (int i = 0; i < n_vocab; ++i) {
+                if (i != eot) logits[i] = -INFINITY;
+            }
+            return;
+        }
     }
+}
+
+// Run one whisper_full pass over samples and copy the last segment's text into outBuffer.
+// Returns bytes written, or 0 if nothing was recognized.
+// audio_ctx > 0 limits the encoder to that many 20 ms frames instead of the full 30 s (1500).
+static int transcribe(JNIEnv* env, WhisperContext* wrapper, DecodeScratch* scratch, const float* samples, int n_samples,
+                      jobject outBuffer, jfloatArray confStable, int audio_ctx = 0) {
+    // Keeps this snapshot alive for the whole decode even if nativeConfigure swaps it meanwhile
+    std::shared_ptr<const DecodeOptions> options = std::atomic_load(&wrapper->options);
+    scratch->options = options.get();
     
     // Set up whisper parameters
     whisper_full_params params = whisper_full_default_params(WHISPER_SAMPLING_GREEDY);
     params.language = "en";
-    params.n_threads = 4;
+    params.n_threads = scratch->n_threads;
     params.translate = false;
     params.print_realtime = false;
     params.print_progress = false;
     params.print_timestamps = false;
     params.print_special = false;
-    params.single_segment = true;
+    params.single_segment = options->single_segment;
+    params.no_context = true; // every call is an independent utterance/window
+    params.max_tokens = options->max_tokens;
+    params.audio_ctx = audio_ctx;
+    if (!options->initial_prompt.empty()) {
+        params.initial_prompt = options->initial_prompt.c_str();
+    }
+    if (!options->stop_words.empty()) {
+        params.logits_filter_callback = stop_on_keyword;
+        params.logits_filter_callback_user_data = scratch;
+    }
     
     // Process audio
-    int result = whisper_full(wrapper->ctx, params, wrapper->audio_buffer.data(), wrapper->audio_buffer.size());
+    int result = scratch->state
+        ? whisper_full_with_state(wrapper->ctx, scratch->state, params, samples, n_samples)
+        : whisper_full(wrapper->ctx, params, samples, n_samples);
     
     if (result != 0) {
         return 0; // Processing failed
     }
     
     // Get the transcription
-    int n_segments = whisper_full_n_segments(wrapper->ctx);
+    int n_segments = scratch->state
+        ? whisper_full_n_segments_from_state(scratch->state)
+        : whisper_full_n_segments(wrapper->ctx);
     if (n_segments == 0) {
         return 0; // No segments
     }
     
-    // Get the last segment
-    const char* text = whisper_full_get_segment_text(wrapper->ctx, n_segments - 1);
-    if (!text || strlen(text) == 0) {
+    // Join all segments (a single one in single-segment mode)
+    scratch->last_result.clear();
+    for (int i = 0; i < n_segments; ++i) {
+        const char* segment = scratch->state
+            ? whisper_full_get_segment_text_from_state(scratch->state, i)
+            : whisper_full_get_segment_text(wrapper->ctx, i);
+        if (segment) scratch->last_result += segment;
+    }
+    const char* text = scratch->last_result.c_str();
+    if (scratch->last_result.empty()) {
         return 0; // No text
     }
     
     // Copy result to Java buffer
-    int text_len = strlen(text);
+    int text_len = scratch->last_result.size();
     jbyte* buffer = static_cast<jbyte*>(env->GetDirectBufferAddress(outBuffer));
     if (!buffer) return 0;
     
@@ -121,6 +272,25 @@ Java_com_yellspells_client_stt_WhisperJNI_nativePoll(JNIEnv* env, jclass clazz,
         env->ReleaseFloatArrayElements(confStable, conf_array, 0);
     }
     
+    return text_len;
+}
+
+JNIEXPORT jint JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativePoll(JNIEnv* env, jclass clazz, jlong contextPtr, jobject outBuffer, jfloatArray confStable) {
+    if (contextPtr == 0) return 0;
+    
+    WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
+    
+    // Check if we have enough audio (at least 1 second at 16kHz)
+    if (wrapper->audio_buffer.size() < 16000) {
+        return 0; // Not enough audio yet
+    }
+    
+    int text_len = transcribe(env, wrapper, &wrapper->scratch, wrapper->audio_buffer.data(), wrapper->audio_buffer.size(), outBuffer, confStable);
+    if (text_len == 0) {
+        return 0;
+    }
+    
     // Clear processed audio (keep some overlap for continuity)
     if (wrapper->audio_buffer.size() > 8000) { // Keep last 0.5 seconds
         wrapper->audio_buffer.erase(wrapper->audio_buffer.begin(), wrapper->audio_buffer.end() - 8000);
@@ -129,8 +299,98 @@ Java_com_yellspells_client_stt_WhisperJNI_nativePoll(JNIEnv* env, jclass clazz,
     return text_len;
 }
 
+// One-shot decode of exactly this utterance; the streaming buffer used by push/poll is untouched.
+// whisper_full rejects input shorter than 1 s, so short shouts are padded with trailing silence.
+static int decode_utterance(JNIEnv* env, jlong contextPtr, DecodeScratch* scratch, jobject audioBuffer, jint samples,
+                            jint audioCtx, jobject outBuffer, jfloatArray confStable) {
+    if (contextPtr == 0 || samples <= 0) return 0;
+    
+    WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
+    if (!scratch) scratch = &wrapper->scratch;
+    
+    float* audio_data = static_cast<float*>(env->GetDirectBufferAddress(audioBuffer));
+    if (!audio_data) return 0;
+    
+    const int min_samples = 17600; // 1.1 s @16k
+    if (samples >= min_samples) {
+        return transcribe(env, wrapper, scratch, audio_data, samples, outBuffer, confStable, audioCtx);
+    }
+    scratch->decode_buffer.assign(min_samples, 0.0f);
+    memcpy(scratch->decode_buffer.data(), audio_data, sizeof(float) * samples);
+    return transcribe(env, wrapper, scratch, scratch->decode_buffer.data(), min_samples, outBuffer, confStable, audioCtx);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeDecode(JNIEnv* env, jclass clazz, jlong contextPtr, jobject audioBuffer, jint samples, jobject outBuffer, jfloatArray confStable) {
+    return decode_utterance(env, contextPtr, nullptr, audioBuffer, samples, 0, outBuffer, confStable);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeDecodeCtx(JNIEnv* env, jclass clazz, jlong contextPtr, jobject audioBuffer, jint samples, jint audioCtx, jobject outBuffer, jfloatArray confStable) {
+    return decode_utterance(env, contextPtr, nullptr, audioBuffer, samples, audioCtx, outBuffer, confStable);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeDecodeState(JNIEnv* env, jclass clazz, jlong contextPtr, jlong statePtr, jobject audioBuffer, jint samples, jint audioCtx, jobject outBuffer, jfloatArray confStable) {
+    if (statePtr == 0) return 0;
+    return decode_utterance(env, contextPtr, reinterpret_cast<DecodeScratch*>(statePtr), audioBuffer, samples, audioCtx, outBuffer, confStable);
+}
+
+// Extra decoding state sharing the context's model weights; returns 0 on failure.
+JNIEXPORT jlong JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeCreateState(JNIEnv* env, jclass clazz, jlong contextPtr, jint threads) {
+    if (contextPtr == 0) return 0;
+    
+    WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
+    whisper_state* state = whisper_init_state(wrapper->ctx);
+    if (!state) return 0;
+    
+    DecodeScratch* scratch = new DecodeScratch();
+    scratch->state = state;
+    scratch->n_threads = threads > 0 ? threads : 1;
+    return reinterpret_cast<jlong>(scratch);
+}
+
+JNIEXPORT void JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeFreeState(JNIEnv* env, jclass clazz, jlong statePtr) {
+    if (statePtr != 0) {
+        delete reinterpret_cast<DecodeScratch*>(statePtr);
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_com_yellspells_stt_WhisperJNI_nativeConfigure(JNIEnv* env, jclass clazz, jlong contextPtr, jstring prompt, jint maxTokens, jboolean singleSegment, jobjectArray stopWords) {
+    if (contextPtr == 0) return;
+    
+    WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
+    
+    auto options = std::make_shared<DecodeOptions>();
+    if (prompt != nullptr) {
+        const char* p = env->GetStringUTFChars(prompt, nullptr);
+        options->initial_prompt = p;
+        env->ReleaseStringUTFChars(prompt, p);
+    }
+    options->max_tokens = maxTokens > 0 ? maxTokens : 0;
+    options->single_segment = singleSegment == JNI_TRUE;
+    
+    if (stopWords != nullptr) {
+        jsize n = env->GetArrayLength(stopWords);
+        for (jsize i = 0; i < n; ++i) {
+            jstring word = static_cast<jstring>(env->GetObjectArrayElement(stopWords, i));
+            if (word == nullptr) continue;
+            const char* w = env->GetStringUTFChars(word, nullptr);
+            std::string lower;
+            append_lower(lower, w);
+            env->ReleaseStringUTFChars(word, w);
+            env->DeleteLocalRef(word);
+            if (!lower.empty()) options->stop_words.push_back(lower);
+        }
+    }
+    std::atomic_store(&wrapper->options, std::shared_ptr<const DecodeOptions>(options));
+}
+
 JNIEXPORT void JNICALL
-Java_com_yellspells_client_stt_WhisperJNI_nativeClose(JNIEnv* env, jclass clazz, jlong contextPtr) {
+Java_com_yellspells_stt_WhisperJNI_nativeClose(JNIEnv* env, jclass clazz, jlong contextPtr) {
     if (contextPtr != 0) {
         WhisperContext* wrapper = reinterpret_cast<WhisperContext*>(contextPtr);
         delete wrapper;
@@ -1,43 +1,91 @@
 /* DO NOT EDIT THIS FILE - it is machine generated */
 #include <jni.h>
-/* Header for class com_yellspells_client_stt_WhisperJNI */
+/* Header for class com_yellspells_stt_WhisperJNI */
 
-#ifndef _Included_com_yellspells_client_stt_WhisperJNI
-#define _Included_com_yellspells_client_stt_WhisperJNI
+#ifndef _Included_com_yellspells_stt_WhisperJNI
+#define _Included_com_yellspells_stt_WhisperJNI
 #ifdef __cplusplus
 extern "C" {
 #endif
 
 /*
- * Class:     com_yellspells_client_stt_WhisperJNI
+ * Class:     com_yellspells_stt_WhisperJNI
  * Method:    nativeInit
  * Signature: (Ljava/lang/String;II)J
  */
-JNIEXPORT jlong JNICALL Java_com_yellspells_client_stt_WhisperJNI_nativeInit
+JNIEXPORT jlong JNICALL Java_com_yellspells_stt_WhisperJNI_nativeInit
   (JNIEnv *, jclass, jstring, jint, jint);
 
 /*
- * Class:     com_yellspells_client_stt_WhisperJNI
+ * Class:     com_yellspells_stt_WhisperJNI
  * Method:    nativePush
  * Signature: (JLjava/nio/FloatBuffer;I)I
  */
-JNIEXPORT jint JNICALL Java_com_yellspells_client_stt_WhisperJNI_nativePush
+JNIEXPORT jint JNICALL Java_com_yellspells_stt_WhisperJNI_nativePush
   (JNIEnv *, jclass, jlong, jobject, jint);
 
 /*
- * Class:     com_yellspells_client_stt_WhisperJNI
+ * Class:     com_yellspells_stt_WhisperJNI
  * Method:    nativePoll
  * Signature: (JLjava/nio/ByteBuffer;)Z
  */
-JNIEXPORT jboolean JNICALL Java_com_yellspells_client_stt_WhisperJNI_nativePoll
+JNIEXPORT jboolean JNICALL Java_com_yellspells_stt_WhisperJNI_nativePoll
   (JNIEnv *, jclass, jlong, jobject);
 
 /*
- * Class:     com_yellspells_client_stt_WhisperJNI
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeDecode
+ * Signature: (JLjava/nio/FloatBuffer;ILjava/nio/ByteBuffer;[F)I
+ */
+JNIEXPORT jint JNICALL Java_com_yellspells_stt_WhisperJNI_nativeDecode
+  (JNIEnv *, jclass, jlong, jobject, jint, jobject, jfloatArray);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeDecodeCtx
+ * Signature: (JLjava/nio/FloatBuffer;IILjava/nio/ByteBuffer;[F)I
+ */
+JNIEXPORT jint JNICALL Java_com_yellspells_stt_WhisperJNI_nativeDecodeCtx
+  (JNIEnv *, jclass, jlong, jobject, jint, jint, jobject, jfloatArray);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeDecodeState
+ * Signature: (JJLjava/nio/FloatBuffer;IILjava/nio/ByteBuffer;[F)I
+ */
+JNIEXPORT jint JNICALL Java_com_yellspells_stt_WhisperJNI_nativeDecodeState
+  (JNIEnv *, jclass, jlong, jlong, jobject, jint, jint, jobject, jfloatArray);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeCreateState
+ * Signature: (JI)J
+ */
+JNIEXPORT jlong JNICALL Java_com_yellspells_stt_WhisperJNI_nativeCreateState
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeFreeState
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_yellspells_stt_WhisperJNI_nativeFreeState
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
+ * Method:    nativeConfigure
+ * Signature: (JLjava/lang/String;IZ[Ljava/lang/String;)V
+ */
+JNIEXPORT void JNICALL Java_com_yellspells_stt_WhisperJNI_nativeConfigure
+  (JNIEnv *, jclass, jlong, jstring, jint, jboolean, jobjectArray);
+
+/*
+ * Class:     com_yellspells_stt_WhisperJNI
  * Method:    nativeClose
  * Signature: (J)V
  */
-JNIEXPORT void JNICALL Java_com_yellspells_client_stt_WhisperJNI_nativeClose
+JNIEXPORT void JNICALL Java_com_yellspells_stt_WhisperJNI_nativeClose
   (JNIEnv *, jclass, jlong);
 
 #ifdef __cplusplus
@@ -0,0 +1,41 @@
+package com.yellspells;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The packages the server voice path loads must not reach client-only code: no {@code client}
+ * package, no Minecraft client classes and nothing marked {@code @Environment(EnvType.CLIENT)}.
+ * Checked on the sources, which the test runs from.
+ */
+class ServerSidePackagesTest {
+
+  private static final List<String> SERVER_SIDE = List.of("audio", "stt", "server");
+  private static final List<String> FORBIDDEN = List.of(
+      "com.yellspells.client.", "net.minecraft.client.", "EnvType.CLIENT");
+
+  @Test
+  void serverSidePackagesDoNotUseClientCode() throws IOException {
+    Path root = Path.of("src/main/java/com/yellspells");
+    List<String> violations = new ArrayList<>();
+    for (String pkg : SERVER_SIDE) {
+      try (Stream<Path> files = Files.walk(root.resolve(pkg))) {
+        for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".java"))::iterator) {
+          String source = Files.readString(file);
+          for (String forbidden : FORBIDDEN) {
+            if (source.contains(forbidden)) violations.add(root.relativize(file) + ": " + forbidden);
+          }
+        }
+      }
+    }
+    assertEquals(List.of(), violations);
+  }
+}
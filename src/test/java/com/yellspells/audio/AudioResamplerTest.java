@@ -0,0 +1,65 @@
+package com.yellspells.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link AudioResampler} must not allocate per frame. Allocation is read from the current thread's
+ * allocated-bytes counter around {@value #FRAMES} SVC frames, after a warm-up long enough for the JIT
+ * to compile (and, for the vector kernels, intrinsify) the hot loop.
+ */
+class AudioResamplerTest {
+
+  private static final int FRAME_48K = 960;
+  private static final int WARMUP_FRAMES = 20_000;
+  private static final int FRAMES = 1_000;
+
+  @Test
+  void scalarKernelsAllocateNothingPerFrame() {
+    assertNoAllocation(new AudioResampler(DspKernels.scalar()));
+  }
+
+  @Test
+  void defaultKernelsAllocateNothingPerFrame() {
+    assertNoAllocation(new AudioResampler());
+  }
+
+  @Test
+  void emitsOneThirdOfEachFrame() {
+    AudioResampler resampler = new AudioResampler();
+    float[] out = new float[resampler.outLengthFor(FRAME_48K)];
+    assertEquals(FRAME_48K / 3, resampler.process(tone(), out));
+  }
+
+  private static void assertNoAllocation(AudioResampler resampler) {
+    com.sun.management.ThreadMXBean threads = allocationCounter();
+    short[] in = tone();
+    float[] out = new float[resampler.outLengthFor(FRAME_48K)];
+    for (int i = 0; i < WARMUP_FRAMES; i++) resampler.process(in, out);
+
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < FRAMES; i++) resampler.process(in, out);
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+    assertEquals(0, allocated, "bytes allocated over " + FRAMES + " frames");
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+        "JVM does not report per-thread allocation");
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM does not report per-thread allocation");
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+
+  private static short[] tone() {
+    short[] pcm = new short[FRAME_48K];
+    for (int i = 0; i < pcm.length; i++) pcm[i] = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 48_000.0));
+    return pcm;
+  }
+}
@@ -0,0 +1,114 @@
+package com.yellspells.audio;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The vector kernels must agree with the scalar reference. Lengths 0..MAX_LEN cover every tail size
+ * for lane counts up to 16 (512-bit vectors), odd and even, at unaligned offsets. Sums are compared
+ * within {@value #REL_TOLERANCE} of the sum of absolute terms, since the vector path adds in a
+ * different order and uses fused multiply-adds; the int16 conversion must match exactly.
+ *
+ * <p>Skipped unless the vector kernels are built and the module is present
+ * ({@code ./gradlew test -PvectorKernels}).
+ */
+class DspKernelsTest {
+
+  private static final int MAX_LEN = 67;
+  private static final int ROUNDS = 20;
+  private static final float REL_TOLERANCE = 1e-5f;
+
+  private static final DspKernels SCALAR = DspKernels.scalar();
+  private static DspKernels vector;
+
+  @BeforeAll
+  static void loadVectorKernels() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return;
+    try {
+      vector = (DspKernels) Class.forName("com.yellspells.audio.VectorDspKernels")
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      vector = null;
+    }
+  }
+
+  @Test
+  void symmetricFirMatchesScalar() {
+    assumeVector();
+    Random rnd = new Random(1);
+    for (int taps = 1; taps <= MAX_LEN; taps++) {
+      for (int round = 0; round < ROUNDS; round++) {
+        float[] h = randomFloats(rnd, taps);
+        int off = rnd.nextInt(5);
+        float[] x = randomFloats(rnd, off + taps + rnd.nextInt(5));
+        float bound = 0f;
+        for (int k = 0; k < taps; k++) bound += Math.abs(h[k] * x[off + k]);
+        assertEquals(SCALAR.symmetricFir(x, off, h), vector.symmetricFir(x, off, h),
+            REL_TOLERANCE * bound + Float.MIN_NORMAL, "taps=" + taps + " off=" + off);
+      }
+    }
+  }
+
+  @Test
+  void shortsToFloatsMatchesScalarExactly() {
+    assumeVector();
+    Random rnd = new Random(2);
+    for (int len = 0; len <= MAX_LEN; len++) {
+      short[] src = new short[len + 7];
+      for (int i = 0; i < src.length; i++) src[i] = (short) rnd.nextInt();
+      src[0] = Short.MIN_VALUE;
+      src[src.length - 1] = Short.MAX_VALUE;
+      int srcOff = rnd.nextInt(4);
+      int dstOff = rnd.nextInt(4);
+      float[] expected = new float[len + 4];
+      float[] actual = new float[len + 4];
+      SCALAR.shortsToFloats(src, srcOff, expected, dstOff, len, 1f / 32768f);
+      vector.shortsToFloats(src, srcOff, actual, dstOff, len, 1f / 32768f);
+      assertArrayEquals(expected, actual, "len=" + len);
+    }
+  }
+
+  @Test
+  void sumOfSquaresMatchesScalar() {
+    assumeVector();
+    Random rnd = new Random(3);
+    for (int len = 0; len <= MAX_LEN; len++) {
+      for (int round = 0; round < ROUNDS; round++) {
+        int off = rnd.nextInt(5);
+        float[] x = randomFloats(rnd, off + len + rnd.nextInt(5));
+        float expected = SCALAR.sumOfSquares(x, off, len);
+        assertEquals(expected, vector.sumOfSquares(x, off, len),
+            REL_TOLERANCE * expected + Float.MIN_NORMAL, "len=" + len + " off=" + off);
+      }
+    }
+  }
+
+  @Test
+  void frameSizedInputsMatchScalar() {
+    assumeVector();
+    // The sizes the audio path actually uses: 20 ms frames at 48 kHz and 16 kHz
+    Random rnd = new Random(4);
+    for (int len : new int[] {320, 960}) {
+      float[] x = randomFloats(rnd, len);
+      float expected = SCALAR.sumOfSquares(x, 0, len);
+      assertEquals(expected, vector.sumOfSquares(x, 0, len), REL_TOLERANCE * expected);
+    }
+  }
+
+  private static void assumeVector() {
+    assumeTrue(vector != null, "vector kernels not built or jdk.incubator.vector not present");
+  }
+
+  // Audio-range samples in [-1, 1)
+  private static float[] randomFloats(Random rnd, int n) {
+    float[] a = new float[n];
+    for (int i = 0; i < n; i++) a[i] = rnd.nextFloat() * 2f - 1f;
+    return a;
+  }
+}
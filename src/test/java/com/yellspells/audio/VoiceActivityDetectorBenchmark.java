@@ -0,0 +1,65 @@
+package com.yellspells.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the VAD on one 20 ms frame (320 samples @16k): the energy test every frame pays, the
+ * spectral check (zero crossings, FFT power spectrum, band ratio and flatness) that spectral mode
+ * adds on loud frames before speech onset, and the FFT alone.
+ * {@code ./gradlew jmh -Pjmh=VoiceActivityDetectorBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoiceActivityDetectorBenchmark {
+
+  private static final int FRAME = 320;
+
+  private final float[] frame = new float[FRAME];
+  private final float[] power = new float[MelFrontEnd.N_BINS];
+  private VoiceActivityDetector energy;
+  private VoiceActivityDetector spectral;
+  private MelFrontEnd frontEnd;
+
+  @Setup
+  public void setUp() {
+    // A voiced-like frame: 150 Hz fundamental with a few harmonics
+    for (int i = 0; i < FRAME; i++) {
+      double t = i / 16_000.0;
+      for (int h = 1; h <= 5; h++) frame[i] += (float) (0.2 / h * Math.sin(2 * Math.PI * 150 * h * t));
+    }
+    energy = new VoiceActivityDetector(0.005f, 0.003f, 6);
+    spectral = new VoiceActivityDetector(0.005f, 0.003f, 6, FRAME);
+    frontEnd = new MelFrontEnd(FRAME);
+  }
+
+  @Benchmark
+  public boolean energyUpdate() {
+    return energy.update(frame, 0, FRAME);
+  }
+
+  @Benchmark
+  public boolean spectralCheck() {
+    return spectral.speechLike(frame, 0, FRAME);
+  }
+
+  @Benchmark
+  public float[] powerSpectrum() {
+    frontEnd.powerSpectrum(frame, 0, power);
+    return power;
+  }
+}
@@ -0,0 +1,192 @@
+package com.yellspells.client.stt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link ModelDownloader} against a local HTTP server serving a random "model". */
+class ModelDownloaderTest {
+
+  private static final int CHUNK = 64 << 10;
+  // Two and a half chunks, so the last chunk is a short one
+  private static final byte[] MODEL = new byte[CHUNK * 5 / 2];
+
+  static {
+    new Random(42).nextBytes(MODEL);
+  }
+
+  @TempDir
+  Path dir;
+
+  private HttpServer server;
+  private URI uri;
+  private Path target;
+  private Path part;
+  private Path state;
+
+  // What the stub server does; set per test
+  private volatile boolean ranges = true;
+  private volatile String linkedEtag = sha256Hex(MODEL);
+  private volatile long cutAfter = -1; // bytes sent per response before the connection is dropped; -1 = never
+  private final List<String> rangeRequests = new CopyOnWriteArrayList<>();
+  private final AtomicLong bodyBytes = new AtomicLong();
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/ggml-test.bin", this::serve);
+    server.start();
+    uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/ggml-test.bin");
+    target = dir.resolve("ggml-test.bin");
+    part = dir.resolve("ggml-test.bin.part");
+    state = dir.resolve("ggml-test.bin.part.state");
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void rangedDownloadFetchesEveryChunkAndVerifiesThePublishedHash() throws Exception {
+    Path result = downloader(null).download();
+
+    assertEquals(target, result);
+    assertArrayEquals(MODEL, Files.readAllBytes(target));
+    assertEquals(3, rangeRequests.size(), "one request per chunk: " + rangeRequests);
+    assertTrue(rangeRequests.containsAll(List.of(
+        "bytes=0-" + (CHUNK - 1), "bytes=" + CHUNK + "-" + (2 * CHUNK - 1), "bytes=" + 2 * CHUNK + "-" + (MODEL.length - 1))));
+    assertFalse(Files.exists(part));
+    assertFalse(Files.exists(state));
+  }
+
+  @Test
+  void serverWithoutRangesFallsBackToOneConnection() throws Exception {
+    ranges = false;
+
+    downloader(null).download();
+
+    assertArrayEquals(MODEL, Files.readAllBytes(target));
+    assertTrue(rangeRequests.isEmpty(), "no range requests: " + rangeRequests);
+    assertEquals(MODEL.length, bodyBytes.get());
+    assertFalse(Files.exists(part));
+  }
+
+  @Test
+  void downloadCutMidChunkResumesWhereItStopped() throws Exception {
+    cutAfter = CHUNK / 4;
+    assertThrows(IOException.class, () -> downloader(null).download());
+
+    // The first attempt leaves the part file and its progress, and nothing under the final name
+    assertFalse(Files.exists(target));
+    assertTrue(Files.exists(part));
+    assertTrue(Files.exists(state));
+    long firstRun = bodyBytes.get();
+    assertTrue(firstRun > 0 && firstRun < MODEL.length, "partial first run: " + firstRun);
+
+    cutAfter = -1;
+    rangeRequests.clear();
+    bodyBytes.set(0);
+    downloader(null).download();
+
+    assertArrayEquals(MODEL, Files.readAllBytes(target));
+    // Only what was missing is fetched again, starting inside each chunk
+    assertEquals(MODEL.length - firstRun, bodyBytes.get());
+    assertTrue(rangeRequests.stream().anyMatch(r -> !r.startsWith("bytes=0-") && !r.startsWith("bytes=" + CHUNK + "-")
+        && !r.startsWith("bytes=" + 2 * CHUNK + "-")), "resumed mid-chunk: " + rangeRequests);
+    assertFalse(Files.exists(part));
+    assertFalse(Files.exists(state));
+  }
+
+  @Test
+  void hashMismatchDeletesThePartFileAndNeverCreatesTheTarget() {
+    String wrong = sha256Hex(new byte[] {1, 2, 3});
+
+    IOException e = assertThrows(IOException.class, () -> downloader(wrong).download());
+
+    assertTrue(e.getMessage().contains(wrong), e.getMessage());
+    assertFalse(Files.exists(target));
+    assertFalse(Files.exists(part));
+    assertFalse(Files.exists(state));
+  }
+
+  @Test
+  void wrongPublishedHashIsAlsoRejected() {
+    linkedEtag = "\"" + sha256Hex(new byte[0]) + "\"";
+
+    assertThrows(IOException.class, () -> downloader(null).download());
+
+    assertFalse(Files.exists(target));
+    assertFalse(Files.exists(part));
+  }
+
+  private ModelDownloader downloader(String sha256) {
+    return new ModelDownloader(uri, target, 4, sha256, null, CHUNK, 1);
+  }
+
+  // ===== Stub server =====
+
+  private void serve(HttpExchange ex) throws IOException {
+    try (ex) {
+      var headers = ex.getResponseHeaders();
+      if (linkedEtag != null) headers.set("X-Linked-ETag", linkedEtag);
+      if (ranges) headers.set("Accept-Ranges", "bytes");
+      if (ex.getRequestMethod().equals("HEAD")) {
+        headers.set("Content-Length", Integer.toString(MODEL.length));
+        ex.sendResponseHeaders(200, -1);
+        return;
+      }
+      String range = ex.getRequestHeaders().getFirst("Range");
+      int from = 0;
+      int to = MODEL.length - 1;
+      if (ranges && range != null) {
+        rangeRequests.add(range);
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        from = Integer.parseInt(bounds[0]);
+        to = Integer.parseInt(bounds[1]);
+        headers.set("Content-Range", "bytes " + from + "-" + to + "/" + MODEL.length);
+        ex.sendResponseHeaders(206, to - from + 1);
+      } else {
+        ex.sendResponseHeaders(200, MODEL.length);
+      }
+      int length = to - from + 1;
+      int send = cutAfter >= 0 ? (int) Math.min(length, cutAfter) : length;
+      OutputStream out = ex.getResponseBody();
+      out.write(MODEL, from, send);
+      out.flush();
+      bodyBytes.addAndGet(send);
+      // Closing a fixed-length response early drops the connection, as a network failure would
+    }
+  }
+
+  private static String sha256Hex(byte[] data) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.yellspells.client.stt;
+
+import com.yellspells.stt.WhisperJNI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode latency of one utterance with the encoder limited to {@link WhisperJNI#audioContextFor}
+ * against whisper's full 30 s context, for 0.5 s, 1 s and 3 s shouts (the calibration's synthetic
+ * shout). Needs the native library for this platform and a model file:
+ * <pre>
+ *   ./gradlew jmh -Pjmh="WhisperAudioContextBenchmark -p model=run/yellspells/models/ggml-tiny.en.bin"
+ * </pre>
+ * {@code -p threads=N} sets the whisper thread count (default: half the cores, as in game).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WhisperAudioContextBenchmark {
+
+  @Param("")
+  public String model;
+
+  @Param("0")
+  public int threads;
+
+  @Param({"500", "1000", "3000"})
+  public int durationMs;
+
+  @Param({"adaptive", "full"})
+  public String audioContext;
+
+  private WhisperJNI whisper;
+  private FloatBuffer audio;
+  private ByteBuffer text;
+  private final float[] confidence = new float[2];
+  private int samples;
+  private int audioCtx;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (model.isEmpty() || !Files.isRegularFile(Path.of(model))) {
+      throw new IllegalStateException("Pass the model file with -p model=<path to ggml-*.bin>, got '" + model + "'");
+    }
+    whisper = new WhisperJNI();
+    if (whisper.isUsingMock()) throw new IllegalStateException("Native Whisper library not available on this platform");
+    int n = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    whisper.init(model, 16000, n);
+    if (!whisper.available()) throw new IllegalStateException("Could not load " + model);
+
+    samples = durationMs * 16;
+    audio = ByteBuffer.allocateDirect(4 * samples).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    audio.put(ModelCalibrator.syntheticShout(samples));
+    text = ByteBuffer.allocateDirect(2048).order(ByteOrder.nativeOrder());
+    audioCtx = "adaptive".equals(audioContext) ? WhisperJNI.audioContextFor(samples) : 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (whisper != null) whisper.close();
+  }
+
+  @Benchmark
+  public int decode() {
+    text.clear();
+    int wrote = whisper.decode(audio, samples, audioCtx, text, confidence);
+    if (wrote < 0) throw new IllegalStateException("Native library has no nativeDecode");
+    return wrote;
+  }
+}
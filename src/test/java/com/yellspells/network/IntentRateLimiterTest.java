@@ -0,0 +1,84 @@
+package com.yellspells.network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntentRateLimiterTest {
+
+  private static final long MS = 1_000_000L;
+  // Any point on the nanoTime scale, including negative ones
+  private static final long START = -5_000 * MS;
+
+  @Test
+  void acceptsABurstBackToBack() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 3, START));
+    }
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 3, START));
+    assertEquals(1, limiter.dropped());
+  }
+
+  @Test
+  void refillsOneIntentPerInterval() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+    for (int i = 0; i < 3; i++) limiter.tryAcquire(10, 3, START);
+
+    // 10 per second: one more every 100 ms, not earlier
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 3, START + 99 * MS));
+    assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 3, START + 100 * MS));
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 3, START + 100 * MS));
+    assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 3, START + 200 * MS));
+  }
+
+  @Test
+  void quietPeriodRefillsNoMoreThanTheBurst() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+    limiter.tryAcquire(10, 3, START);
+
+    long later = START + 60_000 * MS;
+    for (int i = 0; i < 3; i++) {
+      assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 3, later));
+    }
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 3, later));
+  }
+
+  @Test
+  void burstBelowOneAllowsOneIntent() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+
+    assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 0, START));
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 0, START));
+  }
+
+  @Test
+  void nonPositiveRateDisablesTheLimit() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+
+    for (int i = 0; i < 1_000; i++) {
+      assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(0, 1, START));
+      assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(-1, 1, START));
+    }
+    assertEquals(0, limiter.dropped());
+  }
+
+  @Test
+  void floodIsThrottledOnceThenDropped() {
+    IntentRateLimiter limiter = new IntentRateLimiter();
+    limiter.tryAcquire(10, 1, START);
+
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 1, START + MS));
+    for (int i = 2; i < 50; i++) {
+      assertEquals(IntentRateLimiter.Result.DROPPED, limiter.tryAcquire(10, 1, START + i * MS));
+    }
+    assertEquals(49, limiter.dropped());
+
+    // An accepted intent ends the flood; the next one is reported again
+    assertEquals(IntentRateLimiter.Result.ACCEPTED, limiter.tryAcquire(10, 1, START + 100 * MS));
+    assertEquals(IntentRateLimiter.Result.THROTTLED, limiter.tryAcquire(10, 1, START + 101 * MS));
+    assertEquals(IntentRateLimiter.Result.DROPPED, limiter.tryAcquire(10, 1, START + 102 * MS));
+    assertEquals(51, limiter.dropped());
+  }
+}
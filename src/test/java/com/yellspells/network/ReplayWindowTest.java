@@ -0,0 +1,139 @@
+package com.yellspells.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplayWindowTest {
+
+  private static final long T = 1_700_000_000_000L;
+
+  @Test
+  void matchesAReferenceSetOverRandomNonces() {
+    int window = 1024;
+    ReplayWindow replay = new ReplayWindow(window);
+    Set<Long> seen = new HashSet<>();
+    long highest = -1;
+    Random random = new Random(42);
+
+    for (int i = 0; i < 2_000_000; i++) {
+      // Mostly around the top of the window, some far below it, some jumps ahead
+      long base = Math.max(0, highest);
+      long seq = switch (random.nextInt(8)) {
+        case 0 -> base + 1 + random.nextInt(3 * window);
+        case 1 -> Math.max(0, base - 2 * window + random.nextInt(window));
+        default -> Math.max(0, base - window - 8 + random.nextInt(window + 24));
+      };
+
+      ReplayWindow.Result expected;
+      if (highest >= 0 && seq + window <= highest) {
+        expected = ReplayWindow.Result.TOO_OLD;
+      } else if (!seen.add(seq)) {
+        expected = ReplayWindow.Result.REPLAYED;
+      } else {
+        expected = ReplayWindow.Result.ACCEPTED;
+        highest = Math.max(highest, seq);
+      }
+      assertEquals(expected, replay.check((int) seq, T, T, 0), "nonce " + seq + " at step " + i);
+
+      if (i % 100_000 == 0) {
+        long floor = highest - window;
+        seen.removeIf(s -> s <= floor);
+      }
+    }
+  }
+
+  @Test
+  void nonceIsAcceptedOnce() {
+    ReplayWindow replay = new ReplayWindow(64);
+
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(3, T, T, 0));
+    // Out of order within the window
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(2, T, T, 0));
+    assertEquals(ReplayWindow.Result.REPLAYED, replay.check(1, T, T, 0));
+    assertEquals(ReplayWindow.Result.REPLAYED, replay.check(3, T, T, 0));
+  }
+
+  @Test
+  void tooOldStartsExactlyOneWindowBelowTheHighestNonce() {
+    // Rounded up to whole blocks: 100 -> 128
+    ReplayWindow replay = new ReplayWindow(100);
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1000, T, T, 0));
+
+    assertEquals(ReplayWindow.Result.TOO_OLD, replay.check(1000 - 128, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1000 - 127, T, T, 0));
+  }
+
+  @Test
+  void advancingClearsBlocksThatReuseARingSlot() {
+    // One block of window plus the partial one: a ring of two blocks
+    ReplayWindow replay = new ReplayWindow(64);
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(10, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(11, T, T, 0));
+
+    // Block 2 lands in block 0's slot; bits 10 and 11 must not survive as nonces 138 and 139
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(191, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(138, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(139, T, T, 0));
+    assertEquals(ReplayWindow.Result.REPLAYED, replay.check(138, T, T, 0));
+  }
+
+  @Test
+  void jumpFarAheadClearsTheWholeRing() {
+    ReplayWindow replay = new ReplayWindow(128);
+    for (int n = 1; n <= 150; n++) assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(n, T, T, 0));
+
+    // Many ring turns ahead: every slot is reused, so no old bit may be left
+    int jump = 1_000_000;
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(jump + 150, T, T, 0));
+    for (int n = jump + 23; n < jump + 150; n++) {
+      assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(n, T, T, 0), "nonce " + n);
+    }
+  }
+
+  @Test
+  void noncesAreReadAsUnsigned() {
+    ReplayWindow replay = new ReplayWindow(64);
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(Integer.MAX_VALUE, T, T, 0));
+    // 2^31 and up arrive as negative ints and still count as above the highest
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(Integer.MIN_VALUE, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(-1, T, T, 0));
+    assertEquals(ReplayWindow.Result.REPLAYED, replay.check(-1, T, T, 0));
+    // A counter that wrapped to 0 is far below 2^32 - 1, so it cannot replay old nonces
+    assertEquals(ReplayWindow.Result.TOO_OLD, replay.check(0, T, T, 0));
+  }
+
+  @Test
+  void skewIsMeasuredFromTheFirstAcceptedOffset() {
+    ReplayWindow replay = new ReplayWindow(64);
+    long clientClockBehind = 5 * 60_000L;
+
+    // A client clock minutes off is fine as long as it stays off by the same amount
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1, T - clientClockBehind, T, 30_000));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(2, T + 1_000 - clientClockBehind, T + 30_000, 30_000));
+    // Held back 30 s + 1 ms longer than the first intent
+    assertEquals(ReplayWindow.Result.SKEWED, replay.check(3, T - clientClockBehind, T + 30_001, 30_000));
+    assertEquals(ReplayWindow.Result.SKEWED, replay.check(3, T + 30_001 - clientClockBehind, T, 30_000));
+  }
+
+  @Test
+  void skewedIntentDoesNotConsumeItsNonce() {
+    ReplayWindow replay = new ReplayWindow(64);
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1, T, T, 1_000));
+
+    assertEquals(ReplayWindow.Result.SKEWED, replay.check(2, T, T + 5_000, 1_000));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(2, T + 5_000, T + 5_000, 1_000));
+  }
+
+  @Test
+  void zeroMaxSkewDisablesTheTimeCheck() {
+    ReplayWindow replay = new ReplayWindow(64);
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(1, T, T, 0));
+    assertEquals(ReplayWindow.Result.ACCEPTED, replay.check(2, T - 3_600_000, T + 3_600_000, 0));
+  }
+}
@@ -0,0 +1,150 @@
+package com.yellspells.server.voice;
+
+import com.yellspells.config.YellSpellsConfig;
+import de.maxhenkel.voicechat.api.opus.OpusDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link ServerVoiceRecognizer} end to end with {@link MockSttBackend} and a fake Opus decoder. */
+class ServerVoiceRecognizerTest {
+
+  private static final UUID PLAYER = new UUID(1, 2);
+  private static final byte[] VOICE = {1};
+  private static final byte[] END = new byte[0];
+  private static final int SPEECH_PACKETS = 40; // 800 ms, under the 1 s packet queue
+
+  private final YellSpellsConfig cfg = new YellSpellsConfig();
+  private final Map<String, String> spellByKeyword = new HashMap<>();
+  private final List<String> cast = new CopyOnWriteArrayList<>();
+  private final AtomicInteger decodersCreated = new AtomicInteger();
+  private final AtomicInteger decodersClosed = new AtomicInteger();
+  private final Supplier<OpusDecoder> decoders = () -> {
+    decodersCreated.incrementAndGet();
+    return new ToneDecoder();
+  };
+  private ServerVoiceRecognizer recognizer;
+
+  @BeforeEach
+  void start() {
+    cfg.spells.forEach((id, spell) -> spell.keywords.forEach(kw -> spellByKeyword.put(kw, id)));
+    recognizer = new ServerVoiceRecognizer(() -> cfg, new MockSttBackend(1, () -> cfg), 1,
+        spellByKeyword::get, (player, spellId, confidence) -> cast.add(player + " " + spellId));
+  }
+
+  @AfterEach
+  void stop() {
+    recognizer.shutdown();
+  }
+
+  @Test
+  void utteranceFromAJoinedPlayerIsCast() throws Exception {
+    recognizer.add(PLAYER);
+
+    talk(PLAYER);
+
+    awaitUntil(() -> recognizer.getCasts() == 1);
+    assertEquals(1, recognizer.getUtterances());
+    assertEquals(1, cast.size());
+    assertTrue(cast.get(0).startsWith(PLAYER + " "), cast.get(0));
+    assertTrue(spellByKeyword.containsValue(cast.get(0).substring(PLAYER.toString().length() + 1)), cast.get(0));
+    assertEquals(0, recognizer.getDroppedPackets());
+    assertEquals(0, recognizer.getDroppedUtterances());
+  }
+
+  @Test
+  void packetsWithoutASessionAreIgnored() throws Exception {
+    talk(PLAYER);
+
+    assertEquals(0, recognizer.sessions());
+    assertEquals(0, decodersCreated.get());
+    Thread.sleep(200);
+    assertEquals(0, recognizer.getUtterances());
+  }
+
+  @Test
+  void latePacketsAfterDisconnectDoNotRecreateTheSession() throws Exception {
+    recognizer.add(PLAYER);
+    recognizer.onMicrophonePacket(PLAYER, VOICE, decoders);
+    awaitUntil(() -> decodersCreated.get() == 1);
+
+    recognizer.remove(PLAYER);
+    talk(PLAYER);
+
+    assertEquals(0, recognizer.sessions());
+    awaitUntil(() -> decodersClosed.get() == 1);
+    assertEquals(1, decodersCreated.get());
+    assertEquals(0, recognizer.getCasts());
+  }
+
+  @Test
+  void rejoinStartsAFreshSession() throws Exception {
+    recognizer.add(PLAYER);
+    recognizer.remove(PLAYER);
+    recognizer.add(PLAYER);
+
+    talk(PLAYER);
+
+    awaitUntil(() -> recognizer.getCasts() == 1);
+    assertEquals(1, recognizer.sessions());
+  }
+
+  private void talk(UUID player) {
+    for (int i = 0; i < SPEECH_PACKETS; i++) recognizer.onMicrophonePacket(player, VOICE, decoders);
+    recognizer.onMicrophonePacket(player, END, decoders);
+  }
+
+  private static void awaitUntil(Condition condition) throws InterruptedException {
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while (!condition.met()) {
+      assertTrue(System.nanoTime() < deadline, "timed out");
+      Thread.sleep(5);
+    }
+  }
+
+  private interface Condition {
+    boolean met();
+  }
+
+  // Every packet decodes to 20 ms of a loud 440 Hz tone at 48 kHz
+  private final class ToneDecoder implements OpusDecoder {
+    private int phase;
+    private boolean closed;
+
+    @Override
+    public short[] decode(byte[] frame) {
+      short[] pcm = new short[960];
+      for (int i = 0; i < pcm.length; i++, phase++) {
+        pcm[i] = (short) (8000 * Math.sin(2 * Math.PI * 440 * phase / 48_000.0));
+      }
+      return pcm;
+    }
+
+    @Override
+    public void resetState() {
+      phase = 0;
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      decodersClosed.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.yellspells.spells;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CooldownTableTest {
+    private static final long MS = 1_000_000L;
+
+    private final CooldownTable table = new CooldownTable();
+    private final UUID player = UUID.randomUUID();
+    private final long t0 = System.nanoTime();
+
+    @Test
+    void spellCooldownExpires() {
+        int fireball = CooldownTable.spellSlot(0);
+        table.start(player, fireball, 3, 2000, 0, t0);
+
+        assertTrue(table.isOnCooldown(player, fireball, t0));
+        assertTrue(table.isOnCooldown(player, fireball, t0 + 1999 * MS));
+        assertFalse(table.isOnCooldown(player, fireball, t0 + 2000 * MS));
+    }
+
+    @Test
+    void castStartsTheGlobalCooldownForEverySpell() {
+        int fireball = CooldownTable.spellSlot(0);
+        int heal = CooldownTable.spellSlot(1);
+        table.start(player, fireball, 3, 2000, 500, t0);
+
+        assertTrue(table.isOnCooldown(player, CooldownTable.GLOBAL, t0 + 499 * MS));
+        assertFalse(table.isOnCooldown(player, CooldownTable.GLOBAL, t0 + 500 * MS));
+        // The global slot is separate from the other spells' own slots
+        assertFalse(table.isOnCooldown(player, heal, t0));
+        assertTrue(table.isOnCooldown(player, fireball, t0 + 500 * MS));
+    }
+
+    @Test
+    void laterCastMovesTheGlobalCooldownOnly() {
+        int fireball = CooldownTable.spellSlot(0);
+        int heal = CooldownTable.spellSlot(1);
+        table.start(player, fireball, 3, 2000, 500, t0);
+        table.start(player, heal, 3, 100, 500, t0 + 1000 * MS);
+
+        assertTrue(table.isOnCooldown(player, fireball, t0 + 1999 * MS));
+        assertTrue(table.isOnCooldown(player, CooldownTable.GLOBAL, t0 + 1499 * MS));
+        assertFalse(table.isOnCooldown(player, heal, t0 + 1100 * MS));
+    }
+
+    @Test
+    void unknownPlayerAndSlotAreNotOnCooldown() {
+        assertFalse(table.isOnCooldown(player, CooldownTable.GLOBAL, t0));
+
+        table.start(player, CooldownTable.spellSlot(0), 2, 2000, 500, t0);
+        // A spell added by a reload has no slot for this player yet
+        assertFalse(table.isOnCooldown(player, CooldownTable.spellSlot(4), t0));
+    }
+
+    @Test
+    void slotsGrowWhenAReloadAddsSpells() {
+        int fireball = CooldownTable.spellSlot(0);
+        table.start(player, fireball, 2, 2000, 0, t0);
+
+        // Reload added spells: ordinal 4 is past the player's array
+        int meteor = CooldownTable.spellSlot(4);
+        table.start(player, meteor, 6, 3000, 0, t0 + 100 * MS);
+
+        assertTrue(table.isOnCooldown(player, meteor, t0 + 3099 * MS));
+        // Cooldowns from before the growth are kept
+        assertTrue(table.isOnCooldown(player, fireball, t0 + 1999 * MS));
+        assertFalse(table.isOnCooldown(player, fireball, t0 + 2000 * MS));
+    }
+
+    @Test
+    void removeForgetsThePlayerOnly() {
+        UUID other = UUID.randomUUID();
+        int fireball = CooldownTable.spellSlot(0);
+        table.start(player, fireball, 2, 2000, 500, t0);
+        table.start(other, fireball, 2, 2000, 500, t0);
+
+        table.remove(player);
+
+        assertFalse(table.isOnCooldown(player, fireball, t0));
+        assertFalse(table.isOnCooldown(player, CooldownTable.GLOBAL, t0));
+        assertTrue(table.isOnCooldown(other, fireball, t0));
+    }
+
+    @Test
+    void clearForgetsEveryone() {
+        table.start(player, CooldownTable.spellSlot(0), 2, 2000, 500, t0);
+
+        table.clear();
+
+        assertFalse(table.isOnCooldown(player, CooldownTable.GLOBAL, t0));
+    }
+}
@@ -0,0 +1,61 @@
+package com.yellspells.stt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FuzzyKeywordIndexTest {
+
+  private static final FuzzyKeywordIndex INDEX = FuzzyKeywordIndex.build(defaultSpells(), 2);
+
+  @Test
+  void findsMisheardKeywords() {
+    assertEquals("fireball", INDEX.match("fire ball"));
+    assertEquals("fireball", INDEX.match("okay fireboll now"));
+    assertEquals("greatwall", INDEX.match("grate wall"));
+    // Too far apart in spelling for the BK-tree; found by sound, word for word
+    assertEquals("greatwall", INDEX.match("the great whole of it"));
+    assertEquals("safedescent", INDEX.match("Safe decent!"));
+  }
+
+  @Test
+  void phoneticCollisionsInOrdinarySpeechDoNotCast() {
+    // Both key like "fireball" phonetically, but single-word keywords are only matched by spelling
+    // and "for bill" has the wrong word count
+    assertEquals(FuzzyKeywordIndex.phoneticKey("fireball"), FuzzyKeywordIndex.phoneticKey("forbill"));
+    assertNull(INDEX.match("i paid for bill yesterday"));
+    assertNull(INDEX.match("look at that furball"));
+    // Same word keys as "great wall", but other first letters
+    assertNull(INDEX.match("crate whole"));
+  }
+
+  @Test
+  void closestSpellingWinsOverAPhoneticHit() {
+    Map<String, List<String>> spells = new LinkedHashMap<>();
+    spells.put("greatwall", List.of("great wall"));
+    spells.put("greatwhale", List.of("greatwhale"));
+    FuzzyKeywordIndex index = FuzzyKeywordIndex.build(spells, 2);
+
+    // Sounds like "great wall", but one edit from "greatwhale"
+    assertEquals("greatwhale", index.match("great whole"));
+  }
+
+  @Test
+  void shortWordsNeedAnExactMatch() {
+    assertNull(INDEX.match("ball"));
+    assertNull(INDEX.match("wall"));
+  }
+
+  private static Map<String, List<String>> defaultSpells() {
+    Map<String, List<String>> spells = new LinkedHashMap<>();
+    spells.put("fireball", List.of("fireball"));
+    spells.put("safedescent", List.of("safe descent"));
+    spells.put("greatwall", List.of("great wall"));
+    return spells;
+  }
+}
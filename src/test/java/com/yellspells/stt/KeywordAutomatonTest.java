@@ -0,0 +1,50 @@
+package com.yellspells.stt;
+
+import com.yellspells.config.YellSpellsConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeywordAutomatonTest {
+
+  @Test
+  void matchesAnywhereInTheTranscript() {
+    KeywordAutomaton automaton = KeywordAutomaton.build(config("fireball"));
+
+    assertNull(automaton.match("cast fire"));
+    assertEquals("fireball", automaton.match("cast FIREball now"));
+  }
+
+  @Test
+  void eachTranscriptIsScannedWhole() {
+    KeywordAutomaton automaton = KeywordAutomaton.build(config("fireball"));
+
+    assertEquals("fireball", automaton.match("fireball"));
+    // A re-decode that revised earlier words is judged on its own text
+    assertNull(automaton.match("fire wall"));
+    assertEquals("fireball", automaton.match("a fireball"));
+  }
+
+  @Test
+  void keywordsAreLowercasedIndependentlyOfTheDefaultLocale() {
+    Locale saved = Locale.getDefault();
+    try {
+      // Turkish lowercases I to a dotless i
+      Locale.setDefault(Locale.forLanguageTag("tr"));
+      KeywordAutomaton automaton = KeywordAutomaton.build(config("FIREBALL"));
+      assertEquals(0, automaton.firstMatch("cast fireball"));
+    } finally {
+      Locale.setDefault(saved);
+    }
+  }
+
+  private static YellSpellsConfig config(String keyword) {
+    YellSpellsConfig cfg = new YellSpellsConfig();
+    cfg.spells.clear();
+    cfg.spells.put("fireball", YellSpellsConfig.SpellConfig.ofSingle(keyword, 2000, 0.6f, true));
+    return cfg;
+  }
+}
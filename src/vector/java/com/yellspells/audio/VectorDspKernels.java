@@ -0,0 +1,75 @@
+package com.yellspells.audio;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * jdk.incubator.vector kernels. Only ever loaded reflectively by {@link DspKernels} after the
+ * module has been found, so a JVM without --add-modules never touches this class.
+ */
+final class VectorDspKernels extends DspKernels {
+
+  private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+  // Same lane count as F, half the width: one short lane per float lane for S2F conversion
+  private static final VectorSpecies<Short> S = ShortVector.SPECIES_PREFERRED.withShape(
+      VectorShape.forBitSize(F.length() * Short.SIZE));
+  private static final VectorShuffle<Float> REVERSE = VectorShuffle.fromOp(F, i -> F.length() - 1 - i);
+
+  @Override
+  public String name() { return "vector/" + F.vectorBitSize() + "-bit"; }
+
+  @Override
+  public float symmetricFir(float[] x, int off, float[] taps) {
+    final int n = taps.length;
+    final int half = n >>> 1;
+    final int lanes = F.length();
+    FloatVector acc = FloatVector.zero(F);
+    int k = 0;
+    for (; k + lanes <= half; k += lanes) {
+      FloatVector lo = FloatVector.fromArray(F, x, off + k);
+      // x[off + n - 1 - k - j] for j = 0..lanes-1, loaded ascending then reversed
+      FloatVector hi = FloatVector.fromArray(F, x, off + n - k - lanes).rearrange(REVERSE);
+      acc = lo.add(hi).fma(FloatVector.fromArray(F, taps, k), acc);
+    }
+    float sum = acc.reduceLanes(VectorOperators.ADD);
+    int last = off + n - 1;
+    for (; k < half; k++) {
+      sum += taps[k] * (x[off + k] + x[last - k]);
+    }
+    if ((n & 1) != 0) sum += taps[half] * x[off + half];
+    return sum;
+  }
+
+  @Override
+  public void shortsToFloats(short[] src, int srcOff, float[] dst, int dstOff, int len, float scale) {
+    final int lanes = F.length();
+    int i = 0;
+    for (; i + lanes <= len; i += lanes) {
+      FloatVector v = (FloatVector) ShortVector.fromArray(S, src, srcOff + i)
+          .convertShape(VectorOperators.S2F, F, 0);
+      v.mul(scale).intoArray(dst, dstOff + i);
+    }
+    for (; i < len; i++) dst[dstOff + i] = src[srcOff + i] * scale;
+  }
+
+  @Override
+  public float sumOfSquares(float[] x, int off, int len) {
+    final int lanes = F.length();
+    FloatVector acc = FloatVector.zero(F);
+    int i = 0;
+    for (; i + lanes <= len; i += lanes) {
+      FloatVector v = FloatVector.fromArray(F, x, off + i);
+      acc = v.fma(v, acc);
+    }
+    float sum = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      float s = x[off + i];
+      sum += s * s;
+    }
+    return sum;
+  }
+}